@@ -0,0 +1,38 @@
+package application;
+
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.ehcache.xml.XmlConfiguration;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.ObjectUtils;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+
+/**
+ * The cache manager behind the second-level cache, created and closed by the context rather than by Hibernate. The
+ * entity manager factory depends on it, so the context destroys the factory first and only then closes the manager.
+ */
+@Configuration
+public class CacheConfiguration {
+
+    /**
+     * Registered under a URI of its own, so that two contexts in one JVM, such as those of the tests, do not share a
+     * manager which the first of them to close would close for the other
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager() {
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(
+                EhcacheCachingProvider.class.getName());
+        URI uri = URI.create("urn:fooddelivery:cache:" + ObjectUtils.getIdentityHexString(this));
+        return provider.getCacheManager(uri, new XmlConfiguration(getClass().getResource("/ehcache.xml")));
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+}
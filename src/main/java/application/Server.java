@@ -6,12 +6,14 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableAutoConfiguration
 @EnableJpaRepositories("application/repositories")
 @EntityScan( basePackages = {"application/entities"} )
 @ComponentScan( basePackages = {"application"} )
+@EnableScheduling
 public class Server {
 
     public static void main(String[] args){
@@ -0,0 +1,26 @@
+package application.controllers.commands;
+
+import application.dto.CacheRegionDTO;
+import application.services.CacheService;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class CacheCommands implements CommandModule {
+
+    private CacheService cacheService;
+
+    @Autowired
+    public CacheCommands(CacheService cacheService) {
+        this.cacheService = cacheService;
+    }
+
+    @Override
+    public void registerCommands(CommandRegistry registry) {
+        ObjectWriter regionWriter = registry.getMapper().writerFor(CacheRegionDTO.class);
+
+        registry.register("getCacheStats", (context, args) ->
+                Reply.list("CacheRegionDTO", regionWriter, cacheService.getCacheStatistics()));
+    }
+}
@@ -0,0 +1,10 @@
+package application.controllers.commands;
+
+/**
+ * Handler of one socket command, resolved once by its header
+ */
+@FunctionalInterface
+public interface Command {
+
+    Reply execute(CommandContext context, CommandArgs args) throws Exception;
+}
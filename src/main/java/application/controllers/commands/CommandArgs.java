@@ -0,0 +1,50 @@
+package application.controllers.commands;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Positional arguments of a received message, either the legacy objectsJson strings or a json-v2 payload array
+ */
+public class CommandArgs {
+
+    private final List<String> objectsJson;
+    private final JsonNode payload;
+
+    public CommandArgs(List<String> objectsJson) {
+        this.objectsJson = objectsJson;
+        this.payload = null;
+    }
+
+    public CommandArgs(JsonNode payload) {
+        this.objectsJson = null;
+        this.payload = payload;
+    }
+
+    public int size() {
+        return payload == null ? objectsJson.size() : payload.size();
+    }
+
+    public String get(int index) {
+        if (payload == null) {
+            return objectsJson.get(index);
+        }
+        JsonNode node = payload.get(index);
+        return node.isValueNode() ? node.asText() : node.toString();
+    }
+
+    /**
+     * Parses the argument with a reader bound to its type; a legacy argument is itself a JSON document,
+     * a json-v2 argument is read straight from the payload tree
+     */
+    public <T> T read(int index, ObjectReader reader) throws IOException {
+        if (payload == null) {
+            return reader.readValue(objectsJson.get(index));
+        }
+        JsonNode node = payload.get(index);
+        return node.isTextual() ? reader.readValue(node.textValue()) : reader.readValue(node);
+    }
+}
@@ -0,0 +1,54 @@
+package application.controllers.commands;
+
+import application.dto.UserDTO;
+import application.services.exceptions.InvalidDataException;
+
+/**
+ * The client connection a command is running for
+ */
+public interface CommandContext {
+
+    /**
+     * Sends a message to this client, outside of the command's reply
+     */
+    void send(Reply message);
+
+    /**
+     * Switches the wire format of this connection once the reply of the current command is sent
+     */
+    void switchProtocol(String protocolName) throws InvalidDataException;
+
+    /**
+     * Lets the following messages of this client run concurrently, their replies written as they complete
+     */
+    void setPipelined(boolean pipelined);
+
+    /**
+     * Lets the following streamed replies be sent in chunks as their pages are fetched, instead of one frame
+     */
+    void setStreaming(boolean streaming);
+
+    /**
+     * Makes this client receive the messages published to the topic, until it unsubscribes or disconnects
+     */
+    void subscribe(String topic) throws InvalidDataException;
+
+    void unsubscribe(String topic);
+
+    /**
+     * Drops every subscription of this client, as when another user logs in on the same connection
+     */
+    void unsubscribeAll();
+
+    /**
+     * The user logged in on this connection, or null before the first login
+     */
+    UserDTO getUser();
+
+    void setUser(UserDTO user);
+
+    /**
+     * Sends a message to every client subscribed to the topic
+     */
+    void publish(String topic, Reply message);
+}
@@ -0,0 +1,9 @@
+package application.controllers.commands;
+
+/**
+ * Group of commands registered together; every module bean is picked up by the {@link CommandRegistry}
+ */
+public interface CommandModule {
+
+    void registerCommands(CommandRegistry registry);
+}
@@ -0,0 +1,58 @@
+package application.controllers.commands;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps message headers to their commands, so dispatching a message is a single lookup
+ */
+@Component
+public class CommandRegistry {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Map<String, RegisteredCommand> commands = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CommandRegistry(List<CommandModule> modules) {
+        for (CommandModule module : modules) {
+            module.registerCommands(this);
+        }
+    }
+
+    /**
+     * Mapper the commands bind their readers and writers from
+     */
+    public ObjectMapper getMapper() {
+        return mapper;
+    }
+
+    public void register(String header, Command command) {
+        if (commands.putIfAbsent(header, new RegisteredCommand(header, command)) != null) {
+            throw new IllegalStateException("Command " + header + " is already registered");
+        }
+    }
+
+    /**
+     * @return the command for the header, or null if there is none
+     */
+    public RegisteredCommand lookup(String header) {
+        return header == null ? null : commands.get(header);
+    }
+
+    public List<CommandStats> getStats() {
+        Collection<RegisteredCommand> registered = commands.values();
+        List<CommandStats> stats = new ArrayList<>(registered.size());
+        for (RegisteredCommand command : registered) {
+            stats.add(command.getStats());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,50 @@
+package application.controllers.commands;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timing of one command, updated without locking by every connection running it
+ */
+public class CommandStats {
+
+    @Getter
+    private final String command;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    CommandStats(String command) {
+        this.command = command;
+    }
+
+    void record(long nanos, boolean failed) {
+        calls.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        if (failed) {
+            failures.increment();
+        }
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getMeanMicros() {
+        long count = calls.sum();
+        return count == 0 ? 0 : totalNanos.sum() / count / 1000;
+    }
+
+    public long getMaxMicros() {
+        return maxNanos.get() / 1000;
+    }
+}
@@ -0,0 +1,24 @@
+package application.controllers.commands;
+
+import application.services.CourierService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class CourierCommands implements CommandModule {
+
+    private CourierService courierService;
+
+    @Autowired
+    public CourierCommands(CourierService courierService) {
+        this.courierService = courierService;
+    }
+
+    @Override
+    public void registerCommands(CommandRegistry registry) {
+        registry.register("updateLocation", (context, args) -> {
+            courierService.updateLocation(args.get(0), args.get(1), args.get(2));
+            return Reply.none();
+        });
+    }
+}
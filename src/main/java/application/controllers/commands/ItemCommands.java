@@ -0,0 +1,41 @@
+package application.controllers.commands;
+
+import application.dto.ItemDTO;
+import application.dto.RestaurantDTO;
+import application.services.ItemService;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ItemCommands implements CommandModule {
+
+    private ItemService itemService;
+
+    @Autowired
+    public ItemCommands(ItemService itemService) {
+        this.itemService = itemService;
+    }
+
+    @Override
+    public void registerCommands(CommandRegistry registry) {
+        ObjectReader restaurantReader = registry.getMapper().readerFor(RestaurantDTO.class);
+        ObjectWriter itemWriter = registry.getMapper().writerFor(ItemDTO.class);
+
+        registry.register("addItem", (context, args) -> {
+            itemService.addItem(args.read(0, restaurantReader), args.get(1), args.get(2), args.get(3));
+            return Reply.none();
+        });
+        registry.register("updateItem", (context, args) -> {
+            itemService.updateItem(args.read(0, restaurantReader), args.get(1), args.get(2), args.get(3), args.get(4));
+            return Reply.none();
+        });
+        registry.register("deleteItem", (context, args) -> {
+            itemService.deleteItem(args.read(0, restaurantReader), args.get(1));
+            return Reply.none();
+        });
+        registry.register("getItem", (context, args) ->
+                Reply.of("ItemDTO", itemWriter, itemService.findById(args.get(1), args.read(0, restaurantReader))));
+    }
+}
@@ -0,0 +1,39 @@
+package application.controllers.commands;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The serialized menu reply of each restaurant at its latest known version. A snapshot is never changed, a newer
+ * version replaces it.
+ */
+class MenuSnapshots {
+
+    private static class Snapshot {
+        final long version;
+        final Reply reply;
+
+        Snapshot(long version, Reply reply) {
+            this.version = version;
+            this.reply = reply;
+        }
+    }
+
+    private final Map<Integer, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * @return the reply for this version of the restaurant's menu, or null if it was not built yet
+     */
+    Reply get(int restaurantId, long version) {
+        Snapshot snapshot = snapshots.get(restaurantId);
+        return snapshot != null && snapshot.version == version ? snapshot.reply : null;
+    }
+
+    /**
+     * Keeps the reply unless a newer version was stored meanwhile
+     */
+    void put(int restaurantId, long version, Reply reply) {
+        snapshots.merge(restaurantId, new Snapshot(version, reply),
+                (stored, built) -> built.version >= stored.version ? built : stored);
+    }
+}
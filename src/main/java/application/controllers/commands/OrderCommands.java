@@ -0,0 +1,112 @@
+package application.controllers.commands;
+
+import application.dto.OrderDTO;
+import application.dto.OrderFilterDTO;
+import application.dto.OrderPageDTO;
+import application.dto.OrderStatusChangeDTO;
+import application.dto.RestaurantDTO;
+import application.dto.UserDTO;
+import application.services.OrderService;
+import application.services.exceptions.InvalidDataException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+public class OrderCommands implements CommandModule {
+
+    private static final int HISTORY_PAGE_SIZE = 50;
+
+    private OrderService orderService;
+
+    @Autowired
+    public OrderCommands(OrderService orderService) {
+        this.orderService = orderService;
+    }
+
+    @Override
+    public void registerCommands(CommandRegistry registry) {
+        ObjectReader userReader = registry.getMapper().readerFor(UserDTO.class);
+        ObjectReader restaurantReader = registry.getMapper().readerFor(RestaurantDTO.class);
+        ObjectReader itemsReader = registry.getMapper().readerFor(new TypeReference<HashMap<String, String>>() {});
+        ObjectWriter userWriter = registry.getMapper().writerFor(UserDTO.class);
+        ObjectWriter orderWriter = registry.getMapper().writerFor(OrderDTO.class);
+        ObjectWriter percentageWriter = registry.getMapper().writerFor(Integer.class);
+        ObjectReader filterReader = registry.getMapper().readerFor(OrderFilterDTO.class);
+        ObjectWriter pageWriter = registry.getMapper().writerFor(OrderPageDTO.class);
+        ObjectReader idsReader = registry.getMapper().readerFor(new TypeReference<List<Integer>>() {});
+        ObjectWriter changeWriter = registry.getMapper().writerFor(OrderStatusChangeDTO.class);
+
+        registry.register("orderItems", (context, args) -> {
+            UserDTO currentUser = args.read(0, userReader);
+            RestaurantDTO selectedRestaurant = args.read(1, restaurantReader);
+            Map<String, String> itemsToOrder = args.read(2, itemsReader);
+            OrderDTO orderDTO = orderService.createNewOrder(currentUser, selectedRestaurant, itemsToOrder);
+            String notification = "Order with id " + orderDTO.getId() + " was added at " + orderDTO.getDatetime();
+            if (orderDTO.getCourier() != null) {
+                context.publish(Topics.courier(orderDTO.getCourier().getId()),
+                        Reply.text("courierNotification", notification));
+            }
+            context.publish(Topics.restaurant(selectedRestaurant.getId()), Reply.of("OrderDTO", orderWriter, orderDTO));
+            return Reply.of("currentUser", userWriter, currentUser);
+        });
+        registry.register("getOrders", (context, args) ->
+                Reply.stream("OrderDTO", orderWriter, orderService::getOrders));
+        // filter, then optionally the cursor returned with the previous page and the page size
+        registry.register("getOrderHistory", (context, args) -> {
+            OrderFilterDTO filter = args.read(0, filterReader);
+            String cursor = args.size() > 1 ? args.get(1) : null;
+            int limit = args.size() > 2 ? parsePageSize(args.get(2)) : HISTORY_PAGE_SIZE;
+            return Reply.of("OrderPageDTO", pageWriter, orderService.getOrderHistory(filter, cursor, limit));
+        });
+        registry.register("changeOrderStatus", (context, args) -> {
+            publishStatus(context, orderService.changeOrderStatus(args.get(0), args.get(1)));
+            return Reply.none();
+        });
+        // ids of the orders as a JSON array, then the status; answers with the outcome for each order
+        registry.register("changeOrderStatuses", (context, args) -> {
+            List<OrderStatusChangeDTO> changes = orderService.changeOrderStatuses(args.read(0, idsReader),
+                    args.get(1));
+            for (OrderStatusChangeDTO change : changes) {
+                publishStatus(context, change);
+            }
+            return Reply.list("OrderStatusChangeDTO", changeWriter, changes);
+        });
+        registry.register("getDiscount", (context, args) -> {
+            Integer percentage = orderService.findApplicableDiscount(Integer.parseInt(args.get(0)),
+                    Integer.parseInt(args.get(1)));
+            return Reply.of(percentage != null ? "percentage" : null, percentageWriter, percentage);
+        });
+    }
+
+    /**
+     * Tells the clients following the order, and its customer, that the order moved
+     */
+    private static void publishStatus(CommandContext context, OrderStatusChangeDTO change) {
+        if (!change.isChanged()) {
+            return;
+        }
+        Reply message = Reply.text("orderStatus", String.valueOf(change.getOrderId()), change.getStatus().name());
+        context.publish(Topics.order(change.getOrderId()), message);
+        if (change.getCustomerId() != null) {
+            context.publish(Topics.customer(change.getCustomerId()), message);
+        }
+    }
+
+    /**
+     * Only the format is checked here, the service checks the range
+     */
+    private static int parsePageSize(String pageSize) throws InvalidDataException {
+        try {
+            return Integer.parseInt(pageSize);
+        } catch (NumberFormatException e) {
+            throw new InvalidDataException("Invalid page size!");
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package application.controllers.commands;
+
+import application.dto.RatingDTO;
+import application.dto.UserDTO;
+import application.services.RatingService;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class RatingCommands implements CommandModule {
+
+    private RatingService ratingService;
+
+    @Autowired
+    public RatingCommands(RatingService ratingService) {
+        this.ratingService = ratingService;
+    }
+
+    @Override
+    public void registerCommands(CommandRegistry registry) {
+        ObjectReader userReader = registry.getMapper().readerFor(UserDTO.class);
+        ObjectWriter userWriter = registry.getMapper().writerFor(UserDTO.class);
+        ObjectWriter ratingWriter = registry.getMapper().writerFor(RatingDTO.class);
+
+        registry.register("getRatings", (context, args) -> {
+            String userId = args.get(0);
+            return Reply.stream(null, ratingWriter, pageable -> ratingService.getRatings(userId, pageable));
+        });
+        registry.register("deleteRating", (context, args) -> {
+            ratingService.deleteRating(args.get(0), args.read(1, userReader));
+            return Reply.none();
+        });
+        registry.register("addRating", (context, args) ->
+                Reply.of("UserDTO", userWriter, ratingService.addRating(args.get(0), args.get(1), args.get(2))));
+        registry.register("updateRating", (context, args) -> {
+            ratingService.updateRating(args.get(0), args.get(1), args.read(2, userReader));
+            return Reply.none();
+        });
+    }
+}
@@ -0,0 +1,31 @@
+package application.controllers.commands;
+
+/**
+ * A command as found in the registry, timing every execution
+ */
+public final class RegisteredCommand {
+
+    private final Command command;
+    private final CommandStats stats;
+
+    RegisteredCommand(String header, Command command) {
+        this.command = command;
+        this.stats = new CommandStats(header);
+    }
+
+    public Reply execute(CommandContext context, CommandArgs args) throws Exception {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Reply reply = command.execute(context, args);
+            failed = false;
+            return reply;
+        } finally {
+            stats.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    public CommandStats getStats() {
+        return stats;
+    }
+}
@@ -0,0 +1,174 @@
+package application.controllers.commands;
+
+import application.controllers.notification.Message;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Result of a command: a header and the objects to send back, with the writer bound to their type.
+ * Text replies (errors, notifications) have no writer and carry plain strings.
+ * A streamed reply only holds its page source, the connection fetches the pages while sending them.
+ */
+@Getter
+public class Reply {
+
+    private static final Reply NONE = new Reply(null, null, Collections.emptyList(), null, null, false, null);
+
+    /**
+     * One page of a streamed list
+     */
+    public interface PageSource {
+        Slice<?> fetch(Pageable pageable) throws Exception;
+    }
+
+    private final String header;
+    private final ObjectWriter writer;
+    private final List<?> objects;
+
+    private final PageSource pages;
+
+    /**
+     * Index of this frame in a streamed reply, null for a complete reply
+     */
+    private final Integer chunk;
+    private final boolean last;
+
+    /**
+     * The objects already serialized for legacy clients, set on replies built once and sent many times
+     */
+    private final List<String> objectsJson;
+
+    /**
+     * Frames of a snapshot already encoded, by wire format, for the messages sent without a request id
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<Object, byte[]> frames;
+
+    private Reply(String header, ObjectWriter writer, List<?> objects, PageSource pages, Integer chunk, boolean last,
+                  List<String> objectsJson) {
+        this.header = header;
+        this.writer = writer;
+        this.objects = objects;
+        this.pages = pages;
+        this.chunk = chunk;
+        this.last = last;
+        this.objectsJson = objectsJson;
+        this.frames = objectsJson != null ? new ConcurrentHashMap<>() : null;
+    }
+
+    /**
+     * Commands which only change data answer with a null message
+     */
+    public static Reply none() {
+        return NONE;
+    }
+
+    public static Reply of(String header, ObjectWriter writer, Object object) {
+        return new Reply(header, writer, Collections.singletonList(object), null, null, false, null);
+    }
+
+    public static Reply list(String header, ObjectWriter writer, List<?> objects) {
+        return new Reply(header, writer, objects, null, null, false, null);
+    }
+
+    public static Reply text(String header, String... texts) {
+        return new Reply(header, null, Arrays.asList(texts), null, null, false, null);
+    }
+
+    /**
+     * A list sent page by page to clients which turned streaming on, and as a whole to the others
+     */
+    public static Reply stream(String header, ObjectWriter writer, PageSource pages) {
+        return new Reply(header, writer, Collections.emptyList(), pages, null, false, null);
+    }
+
+    public Reply chunk(int index, List<?> objects, boolean last) {
+        return new Reply(header, writer, objects, null, index, last, null);
+    }
+
+    /**
+     * Fetches every page of a streamed reply into one list reply
+     */
+    public Reply collect(int pageSize) throws Exception {
+        List<Object> all = new ArrayList<>();
+        Slice<?> page = pages.fetch(firstPage(pageSize));
+        all.addAll(page.getContent());
+        while (page.hasNext()) {
+            page = pages.fetch(page.nextPageable());
+            all.addAll(page.getContent());
+        }
+        return list(header, writer, all);
+    }
+
+    /**
+     * Pages are ordered by id so they do not overlap while rows are added
+     */
+    public static Pageable firstPage(int pageSize) {
+        return PageRequest.of(0, pageSize, Sort.by("id"));
+    }
+
+    /**
+     * Serializes the objects once, so sending the returned reply to legacy clients does not serialize them again.
+     * The returned reply also keeps the frame each wire format encodes it to, see {@link #getFrame}.
+     */
+    public Reply snapshot() throws JsonProcessingException {
+        return new Reply(header, writer, objects, null, chunk, last, Collections.unmodifiableList(serialize()));
+    }
+
+    /**
+     * @return the frame the format encoded this snapshot to, or null if it was not encoded yet or is no snapshot
+     */
+    public byte[] getFrame(Object format) {
+        return frames == null ? null : frames.get(format);
+    }
+
+    /**
+     * Keeps the frame of a snapshot, so the next client using the same format is sent it without encoding again.
+     * The frame must not be modified afterwards.
+     */
+    public void putFrame(Object format, byte[] frame) {
+        if (frames != null) {
+            frames.putIfAbsent(format, frame);
+        }
+    }
+
+    public boolean isNone() {
+        return this == NONE;
+    }
+
+    public boolean isStreamed() {
+        return pages != null;
+    }
+
+    /**
+     * Builds the message sent to legacy clients, each object serialized to its own JSON string
+     */
+    public Message toMessage() throws JsonProcessingException {
+        if (isNone()) {
+            return null;
+        }
+        List<String> jsonList = objectsJson != null ? objectsJson : serialize();
+        return Message.builder().header(header).objectsJson(jsonList).chunk(chunk).last(last ? true : null).build();
+    }
+
+    private List<String> serialize() throws JsonProcessingException {
+        List<String> jsonList = new ArrayList<>(objects.size());
+        for (Object object : objects) {
+            jsonList.add(writer == null ? (String) object : writer.writeValueAsString(object));
+        }
+        return jsonList;
+    }
+}
@@ -0,0 +1,80 @@
+package application.controllers.commands;
+
+import application.dto.DiscountDTO;
+import application.dto.ItemDTO;
+import application.dto.MenuDTO;
+import application.dto.RestaurantDTO;
+import application.services.RestaurantService;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class RestaurantCommands implements CommandModule {
+
+    private RestaurantService restaurantService;
+
+    private final MenuSnapshots menus = new MenuSnapshots();
+
+    @Autowired
+    public RestaurantCommands(RestaurantService restaurantService) {
+        this.restaurantService = restaurantService;
+    }
+
+    @Override
+    public void registerCommands(CommandRegistry registry) {
+        ObjectWriter restaurantWriter = registry.getMapper().writerFor(RestaurantDTO.class);
+        ObjectWriter itemWriter = registry.getMapper().writerFor(ItemDTO.class);
+        ObjectWriter discountWriter = registry.getMapper().writerFor(DiscountDTO.class);
+        ObjectWriter menuWriter = registry.getMapper().writerFor(MenuDTO.class);
+
+        registry.register("getRestaurants", (context, args) ->
+                Reply.stream(null, restaurantWriter, restaurantService::getRestaurants));
+        registry.register("getSelRestaurant", (context, args) ->
+                Reply.of(RestaurantDTO.class.getName(), restaurantWriter,
+                        restaurantService.findSelectedRestaurant(args.get(0))));
+        registry.register("getItems", (context, args) ->
+                Reply.list("ItemDTO", itemWriter, restaurantService.getRestaurantItems(args.get(0))));
+        registry.register("createRestaurant", (context, args) -> {
+            restaurantService.createRestaurant(args.get(0));
+            return Reply.none();
+        });
+        registry.register("updateRestaurant", (context, args) -> {
+            restaurantService.updateRestaurant(args.get(0), args.get(1));
+            return Reply.none();
+        });
+        registry.register("updateRestaurantLocation", (context, args) -> {
+            restaurantService.updateRestaurantLocation(args.get(0), args.get(1), args.get(2));
+            return Reply.none();
+        });
+        registry.register("deleteRestaurant", (context, args) -> {
+            restaurantService.deleteRestaurant(args.get(0));
+            return Reply.none();
+        });
+        registry.register("getDiscounts", (context, args) ->
+                Reply.list(null, discountWriter, restaurantService.getDiscounts(args.get(0))));
+        registry.register("addDiscount", (context, args) -> {
+            restaurantService.addDiscount(args.get(0), args.get(1), args.get(2));
+            return Reply.none();
+        });
+        registry.register("deleteDiscount", (context, args) -> {
+            restaurantService.deleteDiscount(args.get(0), args.get(1));
+            return Reply.none();
+        });
+        // restaurant id, then optionally the menu version the client already has
+        registry.register("getMenu", (context, args) -> {
+            long version = restaurantService.getMenuVersion(args.get(0));
+            if (args.size() > 1 && String.valueOf(version).equals(args.get(1))) {
+                return Reply.text("MenuNotModified", String.valueOf(version));
+            }
+            int restaurantId = Integer.parseInt(args.get(0));
+            Reply menu = menus.get(restaurantId, version);
+            if (menu == null) {
+                MenuDTO current = restaurantService.getMenu(args.get(0));
+                menu = Reply.of("MenuDTO", menuWriter, current).snapshot();
+                menus.put(restaurantId, current.getVersion(), menu);
+            }
+            return menu;
+        });
+    }
+}
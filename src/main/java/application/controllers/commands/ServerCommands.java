@@ -0,0 +1,91 @@
+package application.controllers.commands;
+
+import application.dto.UserDTO;
+import application.entities.UserType;
+import application.services.OrderService;
+import application.services.exceptions.InvalidDataException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Commands about the server itself
+ */
+@Component
+public class ServerCommands implements CommandModule {
+
+    private OrderService orderService;
+
+    @Autowired
+    public ServerCommands(OrderService orderService) {
+        this.orderService = orderService;
+    }
+
+    @Override
+    public void registerCommands(CommandRegistry registry) {
+        ObjectWriter statsWriter = registry.getMapper().writerFor(CommandStats.class);
+
+        registry.register("protocol", (context, args) -> {
+            context.switchProtocol(args.get(0));
+            return Reply.text("protocol", args.get(0));
+        });
+        registry.register("pipelining", (context, args) -> {
+            boolean pipelined = Boolean.parseBoolean(args.get(0));
+            context.setPipelined(pipelined);
+            return Reply.text("pipelining", String.valueOf(pipelined));
+        });
+        registry.register("streaming", (context, args) -> {
+            boolean streaming = Boolean.parseBoolean(args.get(0));
+            context.setStreaming(streaming);
+            return Reply.text("streaming", String.valueOf(streaming));
+        });
+        registry.register("subscribe", (context, args) -> {
+            checkSubscription(context.getUser(), args.get(0));
+            context.subscribe(args.get(0));
+            return Reply.text("subscribed", args.get(0));
+        });
+        registry.register("unsubscribe", (context, args) -> {
+            context.unsubscribe(args.get(0));
+            return Reply.text("unsubscribed", args.get(0));
+        });
+        registry.register("getCommandStats", (context, args) ->
+                Reply.list("CommandStats", statsWriter, registry.getStats()));
+    }
+
+    /**
+     * Customers and couriers may follow their own topic and the orders they placed or carry, administrators the
+     * restaurants
+     */
+    private void checkSubscription(UserDTO user, String topic) throws InvalidDataException {
+        if (user == null) {
+            throw new InvalidDataException("Log in before subscribing!");
+        }
+        if (!Topics.isValid(topic)) {
+            throw new InvalidDataException("Unknown topic " + topic + "!");
+        }
+        String kind = topic.substring(0, topic.indexOf(':'));
+        int id;
+        try {
+            id = Integer.parseInt(topic.substring(topic.indexOf(':') + 1));
+        } catch (NumberFormatException e) {
+            throw new InvalidDataException("Unknown topic " + topic + "!");
+        }
+        boolean allowed;
+        switch (kind) {
+            case "customer":
+                allowed = user.getUserType() == UserType.REGULAR && user.getId() == id;
+                break;
+            case "courier":
+                allowed = user.getUserType() == UserType.DELIVERY && user.getId() == id;
+                break;
+            case "order":
+                allowed = orderService.isOrderOf(id, user.getId());
+                break;
+            default:
+                allowed = user.getUserType() == UserType.ADMIN;
+        }
+        if (!allowed) {
+            throw new InvalidDataException("Not allowed to subscribe to " + topic + "!");
+        }
+    }
+}
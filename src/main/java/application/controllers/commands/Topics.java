@@ -0,0 +1,34 @@
+package application.controllers.commands;
+
+import java.util.regex.Pattern;
+
+/**
+ * Names of the topics a client can subscribe to, each about one courier, restaurant, order or customer
+ */
+public final class Topics {
+
+    private static final Pattern TOPIC = Pattern.compile("(courier|restaurant|order|customer):\\d+");
+
+    private Topics() {
+    }
+
+    public static String courier(int courierId) {
+        return "courier:" + courierId;
+    }
+
+    public static String restaurant(int restaurantId) {
+        return "restaurant:" + restaurantId;
+    }
+
+    public static String order(int orderId) {
+        return "order:" + orderId;
+    }
+
+    public static String customer(int customerId) {
+        return "customer:" + customerId;
+    }
+
+    public static boolean isValid(String topic) {
+        return topic != null && TOPIC.matcher(topic).matches();
+    }
+}
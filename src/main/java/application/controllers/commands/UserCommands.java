@@ -0,0 +1,60 @@
+package application.controllers.commands;
+
+import application.dto.RestaurantDTO;
+import application.dto.UserDTO;
+import application.entities.UserType;
+import application.services.UserService;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserCommands implements CommandModule {
+
+    private UserService userService;
+
+    @Autowired
+    public UserCommands(UserService userService) {
+        this.userService = userService;
+    }
+
+    @Override
+    public void registerCommands(CommandRegistry registry) {
+        ObjectReader userReader = registry.getMapper().readerFor(UserDTO.class);
+        ObjectWriter userWriter = registry.getMapper().writerFor(UserDTO.class);
+        ObjectWriter restaurantWriter = registry.getMapper().writerFor(RestaurantDTO.class);
+
+        registry.register("login", (context, args) -> {
+            UserDTO credentials = args.read(0, userReader);
+            UserDTO userDTO = userService.loginUser(credentials.getUsername(), credentials.getPassword());
+            context.unsubscribeAll();
+            context.setUser(userDTO);
+            if (userDTO.getUserType() == UserType.DELIVERY) {
+                context.subscribe(Topics.courier(userDTO.getId()));
+            } else if (userDTO.getUserType() == UserType.REGULAR) {
+                context.subscribe(Topics.customer(userDTO.getId()));
+            }
+            return Reply.of("UserDTO", userWriter, userDTO);
+        });
+        registry.register("getUser", (context, args) ->
+                Reply.of("UserDTO", userWriter, userService.getUser(args.get(0))));
+        registry.register("register", (context, args) ->
+                Reply.of("UserDTO", userWriter, userService.createNewUser(args.get(0), args.get(1), args.get(2),
+                        args.get(3), args.get(4))));
+        registry.register("getUsers", (context, args) ->
+                Reply.stream(null, userWriter, userService::getRegularUsers));
+        registry.register("editWallet", (context, args) -> {
+            userService.updateWalletAmount(args.get(0), args.get(1));
+            return Reply.none();
+        });
+        registry.register("getFavouriteRestaurants", (context, args) ->
+                Reply.list(null, restaurantWriter, userService.getFavouriteRestaurants(args.get(0))));
+        registry.register("addFavouriteRestaurant", (context, args) ->
+                Reply.of("UserDTO", userWriter, userService.addFavouriteRestaurant(args.get(0), args.get(1))));
+        registry.register("deleteFavouriteRestaurant", (context, args) ->
+                Reply.of("UserDTO", userWriter, userService.deleteFavouriteRestaurant(args.get(0), args.get(1))));
+        registry.register("rateRestaurant", (context, args) ->
+                Reply.of("UserDTO", userWriter, userService.rateRestaurant(args.get(0), args.get(1), args.get(2))));
+    }
+}
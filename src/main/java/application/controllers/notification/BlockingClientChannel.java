@@ -0,0 +1,178 @@
+package application.controllers.notification;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Client channel over a blocking socket, read by the connection's own listenAndRespond loop.
+ * Sent frames are queued and written by a writer task on the writer threads, which runs while there is something
+ * to write and flushes once per batch, so a slow client only ever blocks its own writer, never a sender.
+ */
+class BlockingClientChannel implements ClientChannel {
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final WritableByteChannel outChannel;
+
+    private final byte[] readBuffer = new byte[8192];
+    private FrameDecoder decoder = new LineDecoder();
+
+    private final OutboundQueue outbound;
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+    private Executor writerThreads;
+
+    private final ReentrantLock readLock = new ReentrantLock();
+    private final Condition readsResumed = readLock.newCondition();
+    private boolean readsSuspended = false;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private ClientSocketConnection connection;
+
+    BlockingClientChannel(Socket socket, OutboundQueue outbound) throws IOException {
+        this.socket = socket;
+        this.in = socket.getInputStream();
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+        this.outChannel = Channels.newChannel(out);
+        this.outbound = outbound;
+    }
+
+    /**
+     * Starts the connection's read loop on one of the connection threads
+     *
+     * @param writerThreads runs the writer of the connection whenever frames are queued
+     */
+    void open(ClientSocketConnection connection, Executor connectionThreads, Executor writerThreads) {
+        this.connection = connection;
+        this.writerThreads = writerThreads;
+        connectionThreads.execute(() -> connection.listenAndRespond(this));
+    }
+
+    /**
+     * Blocks until the client sends more data, then passes every complete frame on
+     *
+     * @return false once the client closed the stream
+     */
+    boolean read(Consumer<byte[]> frames) throws IOException, InterruptedException {
+        awaitReadsResumed();
+        int read = in.read(readBuffer);
+        if (read < 0) {
+            return false;
+        }
+        decoder.decode(ByteBuffer.wrap(readBuffer, 0, read), frames);
+        return true;
+    }
+
+    @Override
+    public boolean send(ByteBuffer frame, boolean notification) {
+        if (closed.get()) {
+            return false;
+        }
+        switch (outbound.offer(frame, notification)) {
+            case DROPPED:
+                return false;
+            case OVERFLOW:
+                System.out.println("Client cannot keep up, disconnecting");
+                close();
+                return false;
+            default:
+                if (writeScheduled.compareAndSet(false, true)) {
+                    try {
+                        writerThreads.execute(this::writeQueued);
+                    } catch (RejectedExecutionException e) {
+                        System.out.println("Writer threads stopped, disconnecting");
+                        close();
+                        return false;
+                    }
+                }
+                return true;
+        }
+    }
+
+    private void writeQueued() {
+        try {
+            do {
+                ByteBuffer frame;
+                while ((frame = outbound.poll()) != null) {
+                    outbound.written(outChannel.write(frame));
+                }
+                out.flush();
+                writeScheduled.set(false);
+            } while (!outbound.isEmpty() && writeScheduled.compareAndSet(false, true));
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private void awaitReadsResumed() throws InterruptedException {
+        readLock.lock();
+        try {
+            while (readsSuspended) {
+                readsResumed.await();
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean awaitDrained(long timeoutMillis) throws InterruptedException {
+        return outbound.awaitDrained(timeoutMillis);
+    }
+
+    /**
+     * Only needed by pipelined clients, otherwise the read loop does not read before it ran the previous message
+     */
+    @Override
+    public void suspendReads() {
+        readLock.lock();
+        try {
+            readsSuspended = true;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void resumeReads() {
+        readLock.lock();
+        try {
+            readsSuspended = false;
+            readsResumed.signalAll();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Only called from the connection's own read loop, between two reads
+     */
+    @Override
+    public void switchDecoder(FrameDecoder decoder) {
+        this.decoder = decoder;
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            outbound.clear();
+            connection.onClosed();
+        }
+    }
+}
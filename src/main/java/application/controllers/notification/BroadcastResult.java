@@ -0,0 +1,15 @@
+package application.controllers.notification;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * How many clients a broadcast message was queued for, and how many missed it because they were too slow or gone
+ */
+@Getter
+@AllArgsConstructor
+public class BroadcastResult {
+
+    private final int delivered;
+    private final int dropped;
+}
@@ -0,0 +1,39 @@
+package application.controllers.notification;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Transport carrying encoded message frames between a client and its {@link ClientSocketConnection}
+ */
+interface ClientChannel {
+
+    /**
+     * Queues an encoded frame for the client, never blocking the caller on the socket.
+     * The frame may be a duplicate of a buffer shared with other clients, so it is only read.
+     *
+     * @param notification whether the frame is an unsolicited message, which a slow client may miss
+     * @return false if the frame was dropped or the client disconnected
+     */
+    boolean send(ByteBuffer frame, boolean notification);
+
+    /**
+     * Waits until the client read most of the frames queued for it
+     *
+     * @return false if it did not before the timeout
+     */
+    boolean awaitDrained(long timeoutMillis) throws InterruptedException;
+
+    /**
+     * Stops reading from the client until {@link #resumeReads()} is called
+     */
+    void suspendReads();
+
+    void resumeReads();
+
+    /**
+     * Splits the following input with another decoder, once the client switched protocol
+     */
+    void switchDecoder(FrameDecoder decoder);
+
+    void close();
+}
@@ -1,339 +1,354 @@
 package application.controllers.notification;
 
-import application.controllers.observer.ConcreteObservable;
-import application.controllers.observer.ConcreteObserver;
-import application.dto.*;
-import application.entities.Order;
-import application.entities.Restaurant;
-import application.entities.User;
-import application.services.*;
+import application.controllers.commands.CommandArgs;
+import application.controllers.commands.CommandContext;
+import application.controllers.commands.CommandRegistry;
+import application.controllers.commands.RegisteredCommand;
+import application.controllers.commands.Reply;
+import application.dto.UserDTO;
 import application.services.exceptions.EntityNotFoundException;
 import application.services.exceptions.IncorrectPasswordException;
 import application.services.exceptions.InvalidDataException;
 import application.services.exceptions.UserNotFoundException;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import net.bytebuddy.asm.Advice;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Component;
-
-import javax.persistence.Column;
-import java.io.*;
-import java.net.Socket;
+import org.springframework.data.domain.Slice;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Runnable listening for incoming messages from the client
+ * Protocol state of one connected client.
+ * With the selector front end, messages decoded by the channel are queued and run one at a time on the worker pool,
+ * so a client always gets its responses in the order of its requests. With a blocking channel the connection's own
+ * thread reads and runs them in {@link #listenAndRespond(BlockingClientChannel)}.
+ * A client that turned pipelining on gets every message run on its own on the worker pool, in both front ends, and
+ * matches the replies, written as they complete, to its requests by their requestId.
  */
-class ClientSocketConnection {
+class ClientSocketConnection implements CommandContext {
+
+    /**
+     * Reading from the client is suspended while this many messages wait to be run or, pipelined, are running
+     */
+    private static final int MAX_PENDING_MESSAGES = 64;
+
+    /**
+     * Objects fetched and sent per frame of a streamed reply
+     */
+    private static final int STREAM_PAGE_SIZE = 100;
+    private static final long STREAM_DRAIN_TIMEOUT_MILLIS = 30000;
 
     private final NotificationService notificationService;
-    private BufferedReader in;
-    private PrintWriter out;
+    private final ClientChannel channel;
+    private final Executor workers;
+
+    private final Queue<byte[]> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingMessages = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private final CommandRegistry commands;
+
+    /**
+     * Wire format of this client, read by any thread sending to it
+     */
+    private volatile MessageCodec codec = Protocol.JSON.codec();
+    private MessageCodec nextCodec = null;
+
+    private volatile boolean pipelined = false;
+    private volatile boolean streaming = false;
 
-    private UserService userService;
-    private RestaurantService restaurantService;
-    private OrderService orderService;
-    private ItemService itemService;
-    private RatingService ratingService;
+    private final SubscriptionRegistry subscriptions;
+    private final Set<String> topics = ConcurrentHashMap.newKeySet();
 
-    private static ConcreteObserver observer=null;
-    private ConcreteObservable subject=null;
+    private volatile UserDTO user;
 
-    ClientSocketConnection(Socket clientSocket, NotificationService notificationService) {
+    ClientSocketConnection(ClientChannel channel, NotificationService notificationService, Executor workers) {
         this.notificationService = notificationService;
-        this.userService = BeanUtil.getBean(UserService.class);
-        this.restaurantService = BeanUtil.getBean(RestaurantService.class);
-        this.orderService = BeanUtil.getBean(OrderService.class);
-        this.itemService = BeanUtil.getBean(ItemService.class);
-        this.ratingService = BeanUtil.getBean(RatingService.class);
-        createReaderAndWriter(clientSocket);
-        new Thread(this::listenAndRespond).start(); // starting a new thread which listens to client messages
+        this.channel = channel;
+        this.workers = workers;
+        this.commands = BeanUtil.getBean(CommandRegistry.class);
+        this.subscriptions = BeanUtil.getBean(SubscriptionRegistry.class);
     }
 
-    private void createReaderAndWriter(Socket clientSocket) {
+    /**
+     * Called by the channel for every decoded frame
+     */
+    void receive(byte[] frame) {
+        if (pendingMessages.incrementAndGet() >= MAX_PENDING_MESSAGES) {
+            channel.suspendReads();
+        }
+        if (pipelined) {
+            runConcurrently(frame);
+        } else {
+            inbox.add(frame);
+            scheduleDrain();
+        }
+    }
+
+    private void runConcurrently(byte[] frame) {
         try {
-            in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-            out = new PrintWriter(clientSocket.getOutputStream(), true);
-        } catch (Exception exception) {
-            System.out.println("Client disconnected");
+            workers.execute(() -> {
+                try {
+                    respond(frame);
+                } catch (Exception exception) {
+                    exception.printStackTrace();
+                    channel.close();
+                } finally {
+                    messageDone();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            System.out.println("Worker pool saturated, dropping client");
+            channel.close();
+        }
+    }
+
+    private void messageDone() {
+        if (pendingMessages.decrementAndGet() == MAX_PENDING_MESSAGES - 1) {
+            channel.resumeReads();
+        }
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                workers.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                System.out.println("Worker pool saturated, dropping client");
+                channel.close();
+            }
+        }
+    }
+
+    private void drain() {
+        byte[] frame;
+        while ((frame = inbox.poll()) != null) {
+            try {
+                respond(frame);
+            } catch (Exception exception) {
+                exception.printStackTrace();
+                channel.close();
+                return;
+            } finally {
+                messageDone();
+            }
+        }
+        draining.set(false);
+        if (!inbox.isEmpty()) {
+            scheduleDrain();
         }
     }
 
     /**
-     * Listening for messages from the client, printing them to the console and responding to them
+     * Listening for messages from the client and responding to them, until the client disconnects
      */
-    private void listenAndRespond(){
-
-        ObjectMapper mapper = new ObjectMapper();
-        String json;
-        Message message = null;
-        List<String> jsonList;
+    void listenAndRespond(BlockingClientChannel in) {
+        List<byte[]> frames = new ArrayList<>();
         try {
-            while (true) {
-                try {
-                    String msg = in.readLine();
-                    System.out.println("Received: " + msg);
-                    Message received = mapper.readValue(msg, Message.class);
-
-                    jsonList = new ArrayList<>();
-
-                    switch (received.getHeader())
-                    {
-                        case "login":
-                            UserDTO obj = mapper.readValue(received.getObjectsJson().get(0), UserDTO.class);
-                            UserDTO userDTO = userService.loginUser(obj.getUsername(), obj.getPassword());
-                            json = mapper.writeValueAsString(userDTO);
-                            jsonList.add(json);
-                            message = Message.builder().header("UserDTO").objectsJson(jsonList).build();
-                            if(userDTO.getUsername().equals("mihai.curier"))
-                            {
-                                observer = new ConcreteObserver(out);
-                            }
-                            break;
-                        case "getUser":
-                            UserDTO userDTO1 = userService.getUser(received.getObjectsJson().get(0));
-                            json = mapper.writeValueAsString(userDTO1);
-                            jsonList.add(json);
-                            message = Message.builder().header("UserDTO").objectsJson(jsonList).build();
-                            break;
-                        case "getRestaurants":
-                            List<RestaurantDTO> restaurants = restaurantService.getAllRestaurants();
-                            message = Message.builder().objectsJson(new ArrayList<>()).build();
-                            for (RestaurantDTO r : restaurants) {
-                                json = mapper.writeValueAsString(r);
-                                jsonList.add(json);
-                            }
-                            message.setObjectsJson(jsonList);
-                            break;
-                        case "getSelRestaurant":
-                            RestaurantDTO restaurant = restaurantService.findSelectedRestaurant(received.getObjectsJson().get(0));
-                            json = mapper.writeValueAsString(restaurant);
-                            jsonList.add(json);
-                            message = Message.builder().header(RestaurantDTO.class.getName()).objectsJson(jsonList).build();
-                            break;
-                        case "orderItems":
-                            UserDTO currentUser = mapper.readValue(received.getObjectsJson().get(0),UserDTO.class);
-                            RestaurantDTO selectedRestaurant = mapper.readValue(received.getObjectsJson().get(1), RestaurantDTO.class);
-                            Map<String,String> itemsToOrder = mapper.readValue(received.getObjectsJson().get(2),new TypeReference<HashMap<String, String>>() {});
-                            OrderDTO orderDTO = orderService.createNewOrder(currentUser,selectedRestaurant,itemsToOrder);
-                            jsonList.add(mapper.writeValueAsString(currentUser));
-                            message = Message.builder().header("currentUser").objectsJson(jsonList).build();
-
-                            if(observer!=null) {
-                                subject = new ConcreteObservable();
-                                subject.addObserver(observer);
-                                subject.addOrder(orderDTO);
-                            }
-                            break;
-                        case "getItems":
-                            List<ItemDTO> items = restaurantService.getRestaurantItems(received.getObjectsJson().get(0));
-                            for(ItemDTO item : items)
-                            {
-                                json = mapper.writeValueAsString(item);
-                                jsonList.add(json);
-                            }
-                            message = Message.builder().header("ItemDTO").objectsJson(jsonList).build();
-                            break;
-                        case "register":
-                            List<String> receivedStrings = received.getObjectsJson();
-                            UserDTO registeredUser = userService.createNewUser(receivedStrings.get(0),receivedStrings.get(1),
-                                    receivedStrings.get(2),receivedStrings.get(3),receivedStrings.get(4));
-                            jsonList.add(mapper.writeValueAsString(registeredUser));
-                            message = Message.builder().header("UserDTO").objectsJson(jsonList).build();
-                            break;
-                        case "getUsers":
-                            List<UserDTO> users = userService.getAllRegularUsers();
-                            message = Message.builder().objectsJson(new ArrayList<>()).build();
-                            for (UserDTO u : users) {
-                                json = mapper.writeValueAsString(u);
-                                jsonList.add(json);
-                            }
-                            message.setObjectsJson(jsonList);
-                            break;
-                        case "editWallet":
-                            userService.updateWalletAmount(received.getObjectsJson().get(0),received.getObjectsJson().get(1));
-                            message=null;
-                            break;
-                        case "createRestaurant":
-                            restaurantService.createRestaurant(received.getObjectsJson().get(0));
-                            message=null;
-                            break;
-                        case "updateRestaurant":
-                            restaurantService.updateRestaurant(received.getObjectsJson().get(0), received.getObjectsJson().get(1));
-                            message=null;
-                            break;
-                        case "deleteRestaurant":
-                            restaurantService.deleteRestaurant(received.getObjectsJson().get(0));
-                            message=null;
-                            break;
-                        case "addItem":
-                            RestaurantDTO restaurantDTO = mapper.readValue(received.getObjectsJson().get(0),RestaurantDTO.class);
-                            itemService.addItem(restaurantDTO,received.getObjectsJson().get(1),
-                                    received.getObjectsJson().get(2),received.getObjectsJson().get(3));
-                            message=null;
-                            break;
-                        case "updateItem":
-                            RestaurantDTO restaurantDTO1 = mapper.readValue(received.getObjectsJson().get(0),RestaurantDTO.class);
-                            itemService.updateItem(restaurantDTO1,received.getObjectsJson().get(1),
-                                    received.getObjectsJson().get(2),received.getObjectsJson().get(3),received.getObjectsJson().get(4));
-                            message=null;
-                            break;
-                        case "deleteItem":
-                            RestaurantDTO restaurantDTO2 = mapper.readValue(received.getObjectsJson().get(0),RestaurantDTO.class);
-                            itemService.deleteItem(restaurantDTO2,received.getObjectsJson().get(1));
-                            message=null;
-                            break;
-                        case "getItem":
-                            RestaurantDTO r = mapper.readValue(received.getObjectsJson().get(0),RestaurantDTO.class);
-                            ItemDTO i = itemService.findById(received.getObjectsJson().get(1),r);
-                            json = mapper.writeValueAsString(i);
-                            jsonList.add(json);
-                            message.setHeader("ItemDTO");
-                            message.setObjectsJson(jsonList);
-                            break;
-                        case "getOrders":
-                            List<OrderDTO> orders = orderService.getAllOrders();
-                            for(OrderDTO order : orders)
-                            {
-                                json = mapper.writeValueAsString(order);
-                                jsonList.add(json);
-                            }
-                            message = Message.builder().header("OrderDTO").objectsJson(jsonList).build();
-                            break;
-                        case "changeOrderStatus":
-                            orderService.changeOrderStatus(received.getObjectsJson().get(0),received.getObjectsJson().get(1));
-                            message=null;
-                            break;
-                        case "getFavouriteRestaurants":
-                            List<RestaurantDTO> favRestaurants = userService.getFavouriteRestaurants(received.getObjectsJson().get(0));
-                            message = Message.builder().objectsJson(new ArrayList<>()).build();
-                            for (RestaurantDTO rest : favRestaurants) {
-                                json = mapper.writeValueAsString(rest);
-                                jsonList.add(json);
-                            }
-                            message.setObjectsJson(jsonList);
-                            break;
-                        case "addFavouriteRestaurant":
-                            UserDTO user = userService.addFavouriteRestaurant(received.getObjectsJson().get(0),received.getObjectsJson().get(1));
-                            message.setHeader("UserDTO");
-                            json = mapper.writeValueAsString(user);
-                            jsonList.add(json);
-                            message.setObjectsJson(jsonList);
-                            break;
-                        case "deleteFavouriteRestaurant":
-                            UserDTO user1 = userService.deleteFavouriteRestaurant(received.getObjectsJson().get(0),received.getObjectsJson().get(1));
-                            message.setHeader("UserDTO");
-                            json = mapper.writeValueAsString(user1);
-                            jsonList.add(json);
-                            message.setObjectsJson(jsonList);
-                            break;
-                        case "rateRestaurant":
-                            UserDTO user2 = userService.rateRestaurant(received.getObjectsJson().get(0),
-                                    received.getObjectsJson().get(1),received.getObjectsJson().get(2));
-                            message.setHeader("UserDTO");
-                            json = mapper.writeValueAsString(user2);
-                            jsonList.add(json);
-                            message.setObjectsJson(jsonList);
-                            break;
-                        case "getRatings":
-                            List<RatingDTO> ratings = ratingService.getRatings(received.getObjectsJson().get(0));
-                            message = Message.builder().objectsJson(new ArrayList<>()).build();
-                            for (RatingDTO rating : ratings) {
-                                json = mapper.writeValueAsString(rating);
-                                jsonList.add(json);
-                            }
-                            message.setObjectsJson(jsonList);
-                            break;
-                        case "deleteRating":
-                            UserDTO receivedUser = mapper.readValue(received.getObjectsJson().get(1),UserDTO.class);
-                            ratingService.deleteRating(received.getObjectsJson().get(0),receivedUser);
-                            message=null;
-                            break;
-                        case "addRating":
-                            UserDTO user3 = ratingService.addRating(received.getObjectsJson().get(0),
-                                    received.getObjectsJson().get(1),received.getObjectsJson().get(2));
-                            message.setHeader("UserDTO");
-                            json = mapper.writeValueAsString(user3);
-                            jsonList.add(json);
-                            message.setObjectsJson(jsonList);
-                            break;
-                        case "updateRating":
-                            UserDTO receivedUser2 = mapper.readValue(received.getObjectsJson().get(2),UserDTO.class);
-                            ratingService.updateRating(received.getObjectsJson().get(0),received.getObjectsJson().get(1),
-                                    receivedUser2);
-                            message=null;
-                            break;
-                        case "getDiscounts":
-                            List<DiscountDTO> discounts = restaurantService.getDiscounts(received.getObjectsJson().get(0));
-                            message = Message.builder().objectsJson(new ArrayList<>()).build();
-                            for (DiscountDTO discountDTO : discounts) {
-                                json = mapper.writeValueAsString(discountDTO);
-                                jsonList.add(json);
-                            }
-                            message.setObjectsJson(jsonList);
-                            break;
-                        case "addDiscount":
-                            restaurantService.addDiscount(received.getObjectsJson().get(0),
-                                    received.getObjectsJson().get(1),received.getObjectsJson().get(2));
-                            message=null;
-                            break;
-                        case "deleteDiscount":
-                            restaurantService.deleteDiscount(received.getObjectsJson().get(0),
-                                    received.getObjectsJson().get(1));
-                            message=null;
-                            break;
-                        case "getDiscount":
-                            Integer d = orderService.findApplicableDiscount(Integer.parseInt(received.getObjectsJson().get(0)),
-                                    Integer.parseInt(received.getObjectsJson().get(1)));
-                            json = mapper.writeValueAsString(d);
-                            jsonList.add(json);
-                            if(d!=null)
-                            {
-                                message.setHeader("percentage");
-                            }
-                            else
-                            {
-                                message.setHeader(null);
-                            }
-                            message.setObjectsJson(jsonList);
-                            break;
+            while (in.read(frames::add)) {
+                for (byte[] frame : frames) {
+                    if (pipelined) {
+                        receive(frame);
+                    } else {
+                        respond(frame);
                     }
-
-                } catch (UserNotFoundException | IncorrectPasswordException | EntityNotFoundException | InvalidDataException e) {
-                    e.printStackTrace();
-                    message = null;
-                    json = e.getMessage();
-                    jsonList = new ArrayList<>();
-                    jsonList.add(json);
-                    message = Message.builder().header(e.getClass().getName()).objectsJson(jsonList).build();
-                } finally {
-                    out.println(mapper.writeValueAsString(message));
                 }
+                frames.clear();
             }
         } catch (Exception exception) {
             exception.printStackTrace();
-            System.out.println("Client disconnected");
-            notificationService.removeClient(this);
+        } finally {
+            channel.close();
+        }
+    }
+
+    void onClosed() {
+        System.out.println("Client disconnected");
+        unsubscribeAll();
+        notificationService.removeClient(this);
+    }
+
+    /**
+     * Printing the message header to the console and responding to it through its registered command
+     */
+    private void respond(byte[] frame) throws Exception {
+        Message received = codec.decode(frame);
+        System.out.println("Received: " + received.getHeader());
+
+        Reply reply = Reply.none();
+        RegisteredCommand command = commands.lookup(received.getHeader());
+        if (command != null) {
+            CommandArgs args = received.getPayload() != null ? new CommandArgs(received.getPayload())
+                    : new CommandArgs(received.getObjectsJson());
+            try {
+                reply = command.execute(this, args);
+                if (reply.isStreamed() && streaming) {
+                    sendStream(reply, received.getRequestId());
+                    return;
+                }
+                if (reply.isStreamed()) {
+                    reply = reply.collect(STREAM_PAGE_SIZE);
+                }
+            } catch (UserNotFoundException | IncorrectPasswordException | EntityNotFoundException | InvalidDataException e) {
+                e.printStackTrace();
+                reply = Reply.text(e.getClass().getName(), e.getMessage());
+            }
+        }
+        send(reply, received.getRequestId());
+
+        if (nextCodec != null) {
+            codec = nextCodec;
+            nextCodec = null;
+        }
+    }
+
+    /**
+     * Unsolicited messages may be dropped if the client does not keep up with them
+     */
+    @Override
+    public void send(Reply message) {
+        try {
+            channel.send(ByteBuffer.wrap(codec.encode(message, null)), true);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Sends a broadcast message, encoding it only if no other client with the same codec did already
+     *
+     * @param encodedByCodec read-only frames of the message, shared by the clients of one broadcast
+     * @return false if the message was dropped for this client
+     */
+    boolean sendShared(Reply message, Map<MessageCodec, ByteBuffer> encodedByCodec) throws IOException {
+        MessageCodec current = codec;
+        ByteBuffer frame = encodedByCodec.get(current);
+        if (frame == null) {
+            frame = ByteBuffer.wrap(current.encode(message, null)).asReadOnlyBuffer();
+            encodedByCodec.put(current, frame);
+        }
+        return channel.send(frame.duplicate(), true);
+    }
+
+    /**
+     * A snapshot reply is encoded once per codec for the requests without id, such as every request of a client
+     * which does not pipeline
+     */
+    private boolean send(Reply message, String requestId) {
+        try {
+            MessageCodec current = codec;
+            byte[] frame = requestId == null ? message.getFrame(current) : null;
+            if (frame == null) {
+                frame = current.encode(message, requestId);
+                if (requestId == null) {
+                    message.putFrame(current, frame);
+                }
+            }
+            return channel.send(ByteBuffer.wrap(frame).asReadOnlyBuffer(), false);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Sends a streamed reply one page per frame, then an empty last frame. The next page is only fetched once the
+     * client read most of the previous ones, so memory does not grow with the size of the list.
+     */
+    private void sendStream(Reply reply, String requestId) throws Exception {
+        int index = 0;
+        Slice<?> page = reply.getPages().fetch(Reply.firstPage(STREAM_PAGE_SIZE));
+        while (page.hasContent() || page.hasNext()) {
+            if (page.hasContent() && !send(reply.chunk(index++, page.getContent(), false), requestId)) {
+                return;
+            }
+            if (!page.hasNext()) {
+                break;
+            }
+            if (!channel.awaitDrained(STREAM_DRAIN_TIMEOUT_MILLIS)) {
+                System.out.println("Client stopped reading a streamed reply, disconnecting");
+                channel.close();
+                return;
+            }
+            page = reply.getPages().fetch(page.nextPageable());
+        }
+        send(reply.chunk(index, Collections.emptyList(), true), requestId);
+    }
+
+    /**
+     * The client must wait for the acknowledgement before sending in the new format. Input is split with the new
+     * decoder right away, so it is in place before the acknowledgement can reach the client.
+     */
+    @Override
+    public void switchProtocol(String protocolName) throws InvalidDataException {
+        if (pipelined) {
+            throw new InvalidDataException("Turn pipelining off before switching protocol!");
+        }
+        Protocol protocol = Protocol.forName(protocolName);
+        if (protocol == null) {
+            throw new InvalidDataException("Unknown protocol " + protocolName + "!");
+        }
+        nextCodec = protocol.codec();
+        channel.switchDecoder(nextCodec.newDecoder());
+    }
+
+    /**
+     * Streamed replies of the following messages are sent in chunks instead of one frame
+     */
+    @Override
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Messages already queued when pipelining is turned on still run in order, the following ones concurrently
+     */
+    @Override
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    @Override
+    public void subscribe(String topic) throws InvalidDataException {
+        subscriptions.subscribe(topic, this);
+        topics.add(topic);
+    }
+
+    @Override
+    public void unsubscribe(String topic) {
+        topics.remove(topic);
+        subscriptions.unsubscribe(topic, this);
+    }
+
+    @Override
+    public void unsubscribeAll() {
+        for (String topic : topics) {
+            unsubscribe(topic);
         }
     }
 
-    void sendMessage(String message) {
-        out.println(message);
+    @Override
+    public UserDTO getUser() {
+        return user;
     }
 
-    public ConcreteObserver getObserver()
-    {
-        return observer;
+    @Override
+    public void setUser(UserDTO user) {
+        this.user = user;
     }
 
-    public ConcreteObservable getSubject()
-    {
-        return subject;
+    @Override
+    public void publish(String topic, Reply message) {
+        subscriptions.publish(topic, message);
     }
-}
\ No newline at end of file
+}
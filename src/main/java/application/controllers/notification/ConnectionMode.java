@@ -0,0 +1,22 @@
+package application.controllers.notification;
+
+/**
+ * How client connections are served, chosen with the notification.server.connection-mode property
+ */
+public enum ConnectionMode {
+
+    /**
+     * All connections multiplexed on a few selector reactors, messages run on the worker pool
+     */
+    SELECTOR,
+
+    /**
+     * One blocking listenAndRespond loop per connection on a bounded pool of platform threads
+     */
+    PLATFORM,
+
+    /**
+     * One blocking listenAndRespond loop per connection on its own virtual thread (JDK 21+)
+     */
+    VIRTUAL
+}
@@ -0,0 +1,98 @@
+package application.controllers.notification;
+
+import application.controllers.commands.Reply;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.IOException;
+
+/**
+ * Envelope whose payload array embeds the objects as real values, written in a single pass with one generator
+ * instead of serializing every object to a string first.
+ * <pre>{"header":"ItemDTO","payload":[{"id":1,"name":"sashimi",...},...]}</pre>
+ * json-v2 sends it as one JSON line; smile sends it as binary Smile behind a 4 byte length, where repeated field
+ * names are written once per frame and then back-referenced.
+ */
+class EnvelopeCodec implements MessageCodec {
+
+    private static final int LENGTH_PREFIX_BYTES = 4;
+
+    private final JsonFactory factory;
+    private final ObjectReader messageReader;
+    private final boolean lengthPrefixed;
+
+    private EnvelopeCodec(JsonFactory factory, boolean lengthPrefixed) {
+        ObjectMapper mapper = new ObjectMapper(factory);
+        this.factory = mapper.getFactory();
+        this.messageReader = mapper.readerFor(Message.class);
+        this.lengthPrefixed = lengthPrefixed;
+    }
+
+    static EnvelopeCodec json() {
+        return new EnvelopeCodec(new JsonFactory(), false);
+    }
+
+    static EnvelopeCodec smile() {
+        return new EnvelopeCodec(new SmileFactory(), true);
+    }
+
+    @Override
+    public FrameDecoder newDecoder() {
+        return lengthPrefixed ? new LengthPrefixedDecoder() : new LineDecoder();
+    }
+
+    @Override
+    public Message decode(byte[] frame) throws IOException {
+        return messageReader.readValue(frame);
+    }
+
+    @Override
+    public byte[] encode(Reply reply, String requestId) throws IOException {
+        ByteArrayBuilder bytes = new ByteArrayBuilder(factory._getBufferRecycler());
+        if (lengthPrefixed) {
+            bytes.appendFourBytes(0);
+        }
+        try (JsonGenerator generator = factory.createGenerator(bytes)) {
+            generator.writeStartObject();
+            generator.writeStringField("header", reply.getHeader());
+            if (requestId != null) {
+                generator.writeStringField("requestId", requestId);
+            }
+            if (reply.getChunk() != null) {
+                generator.writeNumberField("chunk", reply.getChunk());
+                if (reply.isLast()) {
+                    generator.writeBooleanField("last", true);
+                }
+            }
+            generator.writeArrayFieldStart("payload");
+            ObjectWriter writer = reply.getWriter();
+            for (Object object : reply.getObjects()) {
+                if (writer == null) {
+                    generator.writeString((String) object);
+                } else {
+                    writer.writeValue(generator, object);
+                }
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        if (!lengthPrefixed) {
+            bytes.append('\n');
+        }
+        byte[] frame = bytes.toByteArray();
+        bytes.release();
+        if (lengthPrefixed) {
+            int length = frame.length - LENGTH_PREFIX_BYTES;
+            frame[0] = (byte) (length >>> 24);
+            frame[1] = (byte) (length >>> 16);
+            frame[2] = (byte) (length >>> 8);
+            frame[3] = (byte) length;
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,16 @@
+package application.controllers.notification;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Splits the bytes read from a client into frames, keeping a partial frame between reads
+ */
+interface FrameDecoder {
+
+    /**
+     * Consumes every complete frame available in the buffer
+     */
+    void decode(ByteBuffer in, Consumer<byte[]> frames) throws IOException;
+}
@@ -0,0 +1,45 @@
+package application.controllers.notification;
+
+import application.controllers.commands.Reply;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Original protocol: one JSON message per line, every object inside serialized to its own JSON string
+ */
+class LegacyJsonCodec implements MessageCodec {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final ObjectReader messageReader = mapper.readerFor(Message.class);
+    private final ObjectWriter messageWriter = mapper.writerFor(Message.class);
+
+    @Override
+    public FrameDecoder newDecoder() {
+        return new LineDecoder();
+    }
+
+    @Override
+    public Message decode(byte[] frame) throws IOException {
+        return messageReader.readValue(frame);
+    }
+
+    @Override
+    public byte[] encode(Reply reply, String requestId) throws IOException {
+        Message message = reply.toMessage();
+        if (requestId != null) {
+            if (message == null) {
+                message = new Message();
+            }
+            message.setRequestId(requestId);
+        }
+        byte[] json = messageWriter.writeValueAsBytes(message);
+        byte[] frame = Arrays.copyOf(json, json.length + 1);
+        frame[json.length] = '\n';
+        return frame;
+    }
+}
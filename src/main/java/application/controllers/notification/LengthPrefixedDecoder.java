@@ -0,0 +1,45 @@
+package application.controllers.notification;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Splits a byte stream into frames each preceded by its length as a 4 byte big-endian int
+ */
+class LengthPrefixedDecoder implements FrameDecoder {
+
+    static final int MAX_FRAME_BYTES = 1 << 20;
+
+    private final ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+    private byte[] frame = null;
+    private int frameLength = 0;
+
+    @Override
+    public void decode(ByteBuffer in, Consumer<byte[]> frames) throws IOException {
+        while (in.hasRemaining()) {
+            if (frame == null) {
+                while (header.hasRemaining() && in.hasRemaining()) {
+                    header.put(in.get());
+                }
+                if (header.hasRemaining()) {
+                    return;
+                }
+                int length = header.getInt(0);
+                header.clear();
+                if (length < 0 || length > MAX_FRAME_BYTES) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                frame = new byte[length];
+                frameLength = 0;
+            }
+            int count = Math.min(frame.length - frameLength, in.remaining());
+            in.get(frame, frameLength, count);
+            frameLength += count;
+            if (frameLength == frame.length) {
+                frames.accept(frame);
+                frame = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package application.controllers.notification;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Splits a byte stream into newline delimited frames, keeping partial lines between reads
+ */
+class LineDecoder implements FrameDecoder {
+
+    private static final int MAX_LINE_BYTES = 1 << 20;
+
+    private byte[] pending = new byte[256];
+    private int pendingLength = 0;
+
+    @Override
+    public void decode(ByteBuffer in, Consumer<byte[]> lines) throws IOException {
+        while (in.hasRemaining()) {
+            byte b = in.get();
+            if (b == '\n') {
+                int length = pendingLength;
+                if (length > 0 && pending[length - 1] == '\r') {
+                    length--;
+                }
+                lines.accept(Arrays.copyOf(pending, length));
+                pendingLength = 0;
+            } else {
+                if (pendingLength == pending.length) {
+                    if (pendingLength >= MAX_LINE_BYTES) {
+                        throw new IOException("Message exceeds " + MAX_LINE_BYTES + " bytes");
+                    }
+                    pending = Arrays.copyOf(pending, pendingLength * 2);
+                }
+                pending[pendingLength++] = b;
+            }
+        }
+    }
+}
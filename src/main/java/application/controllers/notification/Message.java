@@ -1,5 +1,7 @@
 package application.controllers.notification;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
 import lombok.*;
 
 import java.util.List;
@@ -13,4 +15,25 @@ public class Message {
 
     private String header;
     private List<String> objectsJson;
+
+    /**
+     * Optional id chosen by the client, echoed in the reply so replies can be matched when several are in flight
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String requestId;
+
+    /**
+     * Index of this frame in a streamed reply, the last frame of the stream has no objects and is marked last
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer chunk;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean last;
+
+    /**
+     * Arguments embedded as real JSON, sent by clients using the json-v2 protocol instead of objectsJson
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private JsonNode payload;
 }
@@ -0,0 +1,24 @@
+package application.controllers.notification;
+
+import application.controllers.commands.Reply;
+
+import java.io.IOException;
+
+/**
+ * Wire format of the messages exchanged with one client
+ */
+interface MessageCodec {
+
+    /**
+     * @return a decoder splitting the client's byte stream into the frames of this format
+     */
+    FrameDecoder newDecoder();
+
+    Message decode(byte[] frame) throws IOException;
+
+    /**
+     * @param requestId id of the request being answered, null for unsolicited messages
+     * @return the complete frame to write to the client, delimiter included
+     */
+    byte[] encode(Reply reply, String requestId) throws IOException;
+}
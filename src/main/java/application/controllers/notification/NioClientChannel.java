@@ -0,0 +1,180 @@
+package application.controllers.notification;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Non-blocking client channel driven by a {@link Reactor}.
+ * Reads and writes happen on the reactor thread, decoded frames are passed to the connection which runs them on
+ * the worker pool.
+ */
+class NioClientChannel implements ClientChannel {
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    /**
+     * Most frames handed to the socket in one gathering write
+     */
+    private static final int MAX_GATHERED_FRAMES = 64;
+
+    private final SocketChannel channel;
+    private final Reactor reactor;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private FrameDecoder decoder = new LineDecoder();
+
+    private final OutboundQueue outbound;
+    private final ByteBuffer[] writing = new ByteBuffer[MAX_GATHERED_FRAMES];
+    private int writingStart = 0;
+    private int writingEnd = 0;
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private SelectionKey key;
+    private ClientSocketConnection connection;
+
+    NioClientChannel(SocketChannel channel, Reactor reactor, OutboundQueue outbound) {
+        this.channel = channel;
+        this.reactor = reactor;
+        this.outbound = outbound;
+    }
+
+    /**
+     * The connection may already be sent broadcasts before the channel is registered; their frames stay queued and
+     * are flushed once it is
+     */
+    void open(ClientSocketConnection connection) {
+        this.connection = connection;
+        reactor.register(channel, registeredKey -> {
+            registeredKey.attach(this);
+            key = registeredKey;
+            if (!outbound.isEmpty() && flushScheduled.compareAndSet(false, true)) {
+                flush();
+            }
+        });
+    }
+
+    void onReadable() {
+        try {
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                close();
+                return;
+            }
+            readBuffer.flip();
+            decoder.decode(readBuffer, connection::receive);
+            readBuffer.clear();
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    void onWritable() {
+        flush();
+    }
+
+    @Override
+    public boolean send(ByteBuffer frame, boolean notification) {
+        if (closed.get()) {
+            return false;
+        }
+        switch (outbound.offer(frame, notification)) {
+            case DROPPED:
+                return false;
+            case OVERFLOW:
+                System.out.println("Client cannot keep up, disconnecting");
+                close();
+                return false;
+            default:
+                if (flushScheduled.compareAndSet(false, true)) {
+                    reactor.execute(this::flush);
+                }
+                return true;
+        }
+    }
+
+    /**
+     * Writes as much of the outbound queue as the socket accepts, several frames per gathering write, waiting for
+     * OP_WRITE when it is full
+     */
+    private void flush() {
+        if (key == null) {
+            flushScheduled.set(false);
+            return;
+        }
+        if (!key.isValid()) {
+            return;
+        }
+        try {
+            while (writingStart < writingEnd || fillWriting()) {
+                outbound.written(channel.write(writing, writingStart, writingEnd - writingStart));
+                while (writingStart < writingEnd && !writing[writingStart].hasRemaining()) {
+                    writing[writingStart++] = null;
+                }
+                if (writingStart < writingEnd) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            flushScheduled.set(false);
+            if (!outbound.isEmpty() && flushScheduled.compareAndSet(false, true)) {
+                reactor.execute(this::flush);
+            }
+        } catch (IOException | CancelledKeyException e) {
+            close();
+        }
+    }
+
+    private boolean fillWriting() {
+        writingStart = 0;
+        writingEnd = 0;
+        ByteBuffer frame;
+        while (writingEnd < writing.length && (frame = outbound.poll()) != null) {
+            writing[writingEnd++] = frame;
+        }
+        return writingEnd > 0;
+    }
+
+    @Override
+    public boolean awaitDrained(long timeoutMillis) throws InterruptedException {
+        return outbound.awaitDrained(timeoutMillis);
+    }
+
+    @Override
+    public void suspendReads() {
+        reactor.execute(() -> {
+            if (key != null && key.isValid()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+        });
+    }
+
+    @Override
+    public void resumeReads() {
+        reactor.execute(() -> {
+            if (key != null && key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            }
+        });
+    }
+
+    @Override
+    public void switchDecoder(FrameDecoder decoder) {
+        reactor.execute(() -> this.decoder = decoder);
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            Reactor.closeQuietly(channel);
+            outbound.clear();
+            connection.onClosed();
+        }
+    }
+}
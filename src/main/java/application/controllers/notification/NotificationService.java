@@ -1,53 +1,208 @@
 package application.controllers.notification;
 
-import application.controllers.observer.ConcreteObservable;
-import application.controllers.observer.ConcreteObserver;
+import application.controllers.commands.Reply;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @EnableScheduling
 public class NotificationService {
-    private static final int PORT_NUMBER = 8081;
+
+    private final int portNumber;
+    private final int ioThreads;
+    private final ConnectionMode connectionMode;
+    private final int platformThreads;
+    private final long outboundHighWaterMark;
+    private final OverflowPolicy overflowPolicy;
 
     private final List<ClientSocketConnection> connectedClients = new CopyOnWriteArrayList<>();
 
-    public NotificationService() {
-        System.out.println();
+    /**
+     * Runs the decoded client messages, so that slow database calls never block the reactors
+     */
+    private final ExecutorService workers;
+
+    private Reactor[] reactors;
+    private int nextReactor = 0;
+
+    /**
+     * Runs the listenAndRespond loops of the blocking connection modes
+     */
+    private ExecutorService connectionThreads;
+
+    /**
+     * Writes the queued frames of the blocking connection modes, so a sender never writes to a socket itself
+     */
+    private ExecutorService writerThreads;
+
+    public NotificationService(@Value("${notification.server.port:8081}") int portNumber,
+                               @Value("${notification.server.connection-mode:SELECTOR}") ConnectionMode connectionMode,
+                               @Value("${notification.server.io-threads:2}") int ioThreads,
+                               @Value("${notification.server.worker-threads:16}") int workerThreads,
+                               @Value("${notification.server.worker-queue-capacity:1024}") int workerQueueCapacity,
+                               @Value("${notification.server.platform-threads:256}") int platformThreads,
+                               @Value("${notification.server.outbound-high-water-mark:1048576}") long outboundHighWaterMark,
+                               @Value("${notification.server.overflow-policy:DROP_NOTIFICATIONS}") OverflowPolicy overflowPolicy) {
+        this.portNumber = portNumber;
+        this.connectionMode = connectionMode;
+        this.ioThreads = ioThreads;
+        this.platformThreads = platformThreads;
+        this.outboundHighWaterMark = outboundHighWaterMark;
+        this.overflowPolicy = overflowPolicy;
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workerQueueCapacity), namedThreads("notification-worker-"));
     }
 
     @PostConstruct
-    public void startServer() {
-        Thread thread = new Thread(this::startNotificationServer); // starts a thread which runs the startNotificationServer method
-        thread.start();
+    public void startServer() throws IOException {
+        System.out.println("Notification server listening on port " + portNumber + " in " + connectionMode + " mode");
+        if (connectionMode == ConnectionMode.SELECTOR) {
+            startReactors();
+            return;
+        }
+        connectionThreads = connectionMode == ConnectionMode.VIRTUAL ? newVirtualThreadPerTaskExecutor()
+                : new ThreadPoolExecutor(0, platformThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                namedThreads("notification-connection-"));
+        writerThreads = connectionMode == ConnectionMode.VIRTUAL ? newVirtualThreadPerTaskExecutor()
+                : newWriterThreads();
+        ServerSocket serverSocket = new ServerSocket(portNumber);
+        new Thread(() -> acceptBlocking(serverSocket), "notification-acceptor").start();
     }
 
-    private void startNotificationServer() {
-        try (ServerSocket serverSocket = new ServerSocket(PORT_NUMBER)) {
+    private void startReactors() throws IOException {
+        reactors = new Reactor[ioThreads];
+        for (int i = 0; i < ioThreads; i++) {
+            reactors[i] = new Reactor();
+        }
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(portNumber));
+        reactors[0].listen(serverChannel, this::accept);
+
+        for (int i = 0; i < ioThreads; i++) {
+            new Thread(reactors[i], "notification-io-" + i).start(); // each reactor multiplexes its share of clients
+        }
+    }
+
+    /**
+     * Called on the accepting reactor thread, spreads the clients over the reactors in round robin
+     */
+    private void accept(SocketChannel channel) {
+        Reactor reactor = reactors[nextReactor];
+        nextReactor = (nextReactor + 1) % reactors.length;
+
+        NioClientChannel clientChannel = new NioClientChannel(channel, reactor, newOutboundQueue());
+        ClientSocketConnection clientConnection = new ClientSocketConnection(clientChannel, this, workers);
+        connectedClients.add(clientConnection);
+        clientChannel.open(clientConnection);
+    }
+
+    private void acceptBlocking(ServerSocket serverSocket) {
+        try (serverSocket) {
             while (true) {
                 Socket clientSocket = serverSocket.accept();
-                ClientSocketConnection clientConnection = new ClientSocketConnection(clientSocket, this);
+                BlockingClientChannel clientChannel = new BlockingClientChannel(clientSocket, newOutboundQueue());
+                ClientSocketConnection clientConnection = new ClientSocketConnection(clientChannel, this, workers);
                 connectedClients.add(clientConnection);
+                try {
+                    clientChannel.open(clientConnection, connectionThreads, writerThreads);
+                } catch (RejectedExecutionException e) {
+                    System.out.println("All " + platformThreads + " connection threads are busy, dropping client");
+                    clientChannel.close();
+                }
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    public void sendMessageToAllClients(String message) {
-        for (ClientSocketConnection connection : connectedClients) {
-            connection.sendMessage(message);
+    /**
+     * A connection runs at most one writer at a time and there are at most as many connections as connection
+     * threads, so with as many writer threads every writer gets its own. Writers are queued, never rejected, should
+     * a closed connection's writer still be finishing.
+     */
+    private ExecutorService newWriterThreads() {
+        ThreadPoolExecutor writers = new ThreadPoolExecutor(platformThreads, platformThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), namedThreads("notification-writer-"));
+        writers.allowCoreThreadTimeOut(true);
+        return writers;
+    }
+
+    private OutboundQueue newOutboundQueue() {
+        return new OutboundQueue(outboundHighWaterMark, overflowPolicy);
+    }
+
+    /**
+     * The project still targets Java 11, so the JDK 21 factory is looked up at runtime
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("VIRTUAL connection mode needs a JDK with virtual threads (21+), running on "
+                    + System.getProperty("java.version"), e);
+        }
+    }
+
+    /**
+     * Sends the message to every connected client, each in the protocol it negotiated
+     */
+    public BroadcastResult sendMessageToAllClients(Reply message) {
+        return sendMessageTo(connectedClients, message);
+    }
+
+    /**
+     * The message is encoded once per protocol and only queued for the clients, so the caller never waits on their
+     * sockets
+     */
+    static BroadcastResult sendMessageTo(Iterable<ClientSocketConnection> connections, Reply message) {
+        Map<MessageCodec, ByteBuffer> encodedByCodec = new IdentityHashMap<>();
+        int delivered = 0;
+        int dropped = 0;
+        for (ClientSocketConnection connection : connections) {
+            try {
+                if (connection.sendShared(message, encodedByCodec)) {
+                    delivered++;
+                } else {
+                    dropped++;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                dropped++;
+            }
         }
+        return new BroadcastResult(delivered, dropped);
     }
 
     void removeClient(ClientSocketConnection clientConnection) {
         connectedClients.remove(clientConnection);
     }
 
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> new Thread(runnable, prefix + counter.incrementAndGet());
+    }
 }
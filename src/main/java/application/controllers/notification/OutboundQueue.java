@@ -0,0 +1,124 @@
+package application.controllers.notification;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Frames waiting to be written to one client, bounded in bytes by a high-water mark.
+ * Any thread may offer, only the channel's writer polls.
+ */
+class OutboundQueue {
+
+    enum Offer {
+        QUEUED,
+        DROPPED,
+        OVERFLOW
+    }
+
+    private final Queue<ByteBuffer> frames = new ConcurrentLinkedQueue<>();
+    private final AtomicLong queuedBytes = new AtomicLong();
+
+    private final long highWaterMark;
+    private final OverflowPolicy overflowPolicy;
+
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final Condition drained = drainLock.newCondition();
+    private final AtomicInteger drainWaiters = new AtomicInteger();
+
+    OutboundQueue(long highWaterMark, OverflowPolicy overflowPolicy) {
+        this.highWaterMark = highWaterMark;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * @param notification whether the frame is an unsolicited message rather than the reply to a request
+     * @return OVERFLOW when the client should be disconnected
+     */
+    Offer offer(ByteBuffer frame, boolean notification) {
+        long queued = queuedBytes.addAndGet(frame.remaining());
+        if (queued > highWaterMark) {
+            if (overflowPolicy == OverflowPolicy.DISCONNECT || queued > 2 * highWaterMark) {
+                queuedBytes.addAndGet(-frame.remaining());
+                return Offer.OVERFLOW;
+            }
+            if (notification) {
+                queuedBytes.addAndGet(-frame.remaining());
+                return Offer.DROPPED;
+            }
+        }
+        frames.add(frame);
+        return Offer.QUEUED;
+    }
+
+    /**
+     * The polled frame keeps counting towards the mark until it is reported as {@link #written(long)}
+     */
+    ByteBuffer poll() {
+        return frames.poll();
+    }
+
+    void written(long bytes) {
+        long queued = queuedBytes.addAndGet(-bytes);
+        if (drainWaiters.get() > 0 && queued <= highWaterMark / 2) {
+            signalDrained();
+        }
+    }
+
+    /**
+     * Blocks a producer of many frames, such as a streamed reply, until the queue is back under half the mark
+     *
+     * @return false if the client did not read enough before the timeout
+     */
+    boolean awaitDrained(long timeoutMillis) throws InterruptedException {
+        if (queuedBytes.get() <= highWaterMark / 2) {
+            return true;
+        }
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        drainLock.lock();
+        drainWaiters.incrementAndGet();
+        try {
+            while (queuedBytes.get() > highWaterMark / 2) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = drained.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            drainWaiters.decrementAndGet();
+            drainLock.unlock();
+        }
+    }
+
+    private void signalDrained() {
+        drainLock.lock();
+        try {
+            drained.signalAll();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        return frames.isEmpty();
+    }
+
+    long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    /**
+     * Called once the client is gone, releasing any producer waiting for the queue to drain
+     */
+    void clear() {
+        frames.clear();
+        queuedBytes.set(0);
+        signalDrained();
+    }
+}
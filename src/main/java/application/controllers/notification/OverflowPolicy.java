@@ -0,0 +1,18 @@
+package application.controllers.notification;
+
+/**
+ * What happens to a client whose outbound queue passed the high-water mark, chosen with the
+ * notification.server.overflow-policy property
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Unsolicited messages to the client are dropped, replies are still queued up to twice the mark
+     */
+    DROP_NOTIFICATIONS,
+
+    /**
+     * The client is disconnected
+     */
+    DISCONNECT
+}
@@ -0,0 +1,35 @@
+package application.controllers.notification;
+
+/**
+ * Wire formats a client can ask for with the protocol command; every connection starts with {@link #JSON}
+ */
+enum Protocol {
+
+    JSON("json", new LegacyJsonCodec()),
+    JSON_V2("json-v2", EnvelopeCodec.json()),
+    SMILE("smile", EnvelopeCodec.smile());
+
+    private final String protocolName;
+    private final MessageCodec codec;
+
+    Protocol(String protocolName, MessageCodec codec) {
+        this.protocolName = protocolName;
+        this.codec = codec;
+    }
+
+    MessageCodec codec() {
+        return codec;
+    }
+
+    /**
+     * @return the protocol with the given name, or null if there is none
+     */
+    static Protocol forName(String protocolName) {
+        for (Protocol protocol : values()) {
+            if (protocol.protocolName.equals(protocolName)) {
+                return protocol;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,111 @@
+package application.controllers.notification;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Single I/O thread multiplexing many client channels on one selector.
+ * Every selection key of this reactor is only touched from its own thread; other threads hand work over with
+ * {@link #execute(Runnable)}.
+ */
+class Reactor implements Runnable {
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private ServerSocketChannel serverChannel;
+    private Consumer<SocketChannel> acceptHandler;
+
+    Reactor() throws IOException {
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Makes this reactor also accept connections, passing every accepted channel to the handler
+     */
+    void listen(ServerSocketChannel serverChannel, Consumer<SocketChannel> acceptHandler) throws IOException {
+        this.serverChannel = serverChannel;
+        this.acceptHandler = acceptHandler;
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    void register(SocketChannel channel, Consumer<SelectionKey> onRegistered) {
+        execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                onRegistered.accept(channel.register(selector, SelectionKey.OP_READ));
+            } catch (IOException e) {
+                e.printStackTrace();
+                closeQuietly(channel);
+            }
+        });
+    }
+
+    /**
+     * Runs the task on the reactor thread
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (selector.isOpen()) {
+            try {
+                selector.select();
+                runTasks();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    NioClientChannel client = (NioClientChannel) key.attachment();
+                    if (key.isReadable()) {
+                        client.onReadable();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        client.onWritable();
+                    }
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            acceptHandler.accept(channel);
+        }
+    }
+
+    static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
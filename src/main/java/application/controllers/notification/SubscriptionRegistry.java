@@ -0,0 +1,58 @@
+package application.controllers.notification;
+
+import application.controllers.commands.Reply;
+import application.controllers.commands.Topics;
+import application.services.exceptions.InvalidDataException;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Connections subscribed to each topic, so a notification only reaches the clients interested in it
+ */
+@Component
+public class SubscriptionRegistry {
+
+    private final Map<String, Set<ClientSocketConnection>> subscribers = new ConcurrentHashMap<>();
+
+    void subscribe(String topic, ClientSocketConnection connection) throws InvalidDataException {
+        if (!Topics.isValid(topic)) {
+            throw new InvalidDataException("Unknown topic " + topic + "!");
+        }
+        subscribers.compute(topic, (name, connections) -> {
+            if (connections == null) {
+                connections = ConcurrentHashMap.newKeySet();
+            }
+            connections.add(connection);
+            return connections;
+        });
+    }
+
+    /**
+     * Topics without subscribers are removed, so the map only grows with the topics in use
+     */
+    void unsubscribe(String topic, ClientSocketConnection connection) {
+        subscribers.computeIfPresent(topic, (name, connections) -> {
+            connections.remove(connection);
+            return connections.isEmpty() ? null : connections;
+        });
+    }
+
+    /**
+     * Sends the message to the subscribers of the topic, encoded once per protocol
+     */
+    public BroadcastResult publish(String topic, Reply message) {
+        Set<ClientSocketConnection> connections = subscribers.get(topic);
+        if (connections == null) {
+            return new BroadcastResult(0, 0);
+        }
+        return NotificationService.sendMessageTo(connections, message);
+    }
+
+    public int getSubscriberCount(String topic) {
+        Set<ClientSocketConnection> connections = subscribers.get(topic);
+        return connections == null ? 0 : connections.size();
+    }
+}
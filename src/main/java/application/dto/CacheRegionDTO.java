@@ -0,0 +1,22 @@
+package application.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.*;
+
+/**
+ * Hits, misses and puts of one second-level cache region since the server started
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@ToString
+@Getter
+@Setter
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class CacheRegionDTO {
+
+    private String region;
+    private long hits;
+    private long misses;
+    private long puts;
+}
@@ -18,7 +18,10 @@ public class ItemDTO {
     private int id;
 
     private String name;
-    private int stock;
+    /**
+     * Left out of menus, which are versioned by the changes of the restaurant's managers and not by orders
+     */
+    private Integer stock;
     private float price;
 
     //quantity to order
@@ -31,4 +34,12 @@ public class ItemDTO {
         this.stock=item.getStock();
         this.price=item.getPrice();
     }
+
+    public ItemDTO(ItemSummary item)
+    {
+        this.id=item.getId();
+        this.name=item.getName();
+        this.stock=item.getStock();
+        this.price=item.getPrice();
+    }
 }
@@ -0,0 +1,18 @@
+package application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Menu item row with the id of its restaurant, selected by a JPQL constructor expression without loading the entity
+ */
+@Getter
+@AllArgsConstructor
+public class ItemSummary {
+
+    private int restaurantId;
+    private int id;
+    private String name;
+    private int stock;
+    private float price;
+}
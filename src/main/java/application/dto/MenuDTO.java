@@ -0,0 +1,27 @@
+package application.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * A restaurant with its items and discounts, as they were at one menu version. Item stock, the restaurant's rating
+ * and its location change without a new version, so they are not part of the menu; clients read them with getItems
+ * and getSelRestaurant.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@ToString
+@Getter
+@Setter
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MenuDTO {
+
+    private long version;
+
+    private RestaurantDTO restaurant;
+
+    private List<DiscountDTO> discounts;
+}
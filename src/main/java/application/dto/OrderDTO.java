@@ -8,7 +8,8 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
-import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
 import static lombok.AccessLevel.PRIVATE;
 
@@ -23,6 +24,9 @@ import static lombok.AccessLevel.PRIVATE;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class OrderDTO {
 
+    private static final DateTimeFormatter DATETIME = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
     private int id;
 
     private UserDTO customer;
@@ -38,7 +42,7 @@ public class OrderDTO {
         this.id=order.getId();
         this.customer=new UserDTO(order.getCustomer());
         this.courier=new UserDTO(order.getCourier());
-        this.datetime=order.getDatetime();
+        this.datetime=order.getCreatedAt()==null ? null : DATETIME.format(order.getCreatedAt());
         this.status=order.getStatus();
     }
 }
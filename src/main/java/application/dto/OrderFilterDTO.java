@@ -0,0 +1,26 @@
+package application.dto;
+
+import application.entities.Status;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.*;
+
+/**
+ * Criteria of an order history page, every one of them optional. The time range is given as ISO-8601 instants,
+ * from inclusive and to exclusive.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@ToString
+@Getter
+@Setter
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class OrderFilterDTO {
+
+    private Status status;
+    private Integer courierId;
+    private Integer customerId;
+    private Integer restaurantId;
+    private String from;
+    private String to;
+}
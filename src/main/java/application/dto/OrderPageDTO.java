@@ -0,0 +1,23 @@
+package application.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Orders of one history page, newest first, and the cursor of the next page, null after the last one
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@ToString
+@Getter
+@Setter
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class OrderPageDTO {
+
+    private List<OrderDTO> orders;
+
+    private String next;
+}
@@ -0,0 +1,29 @@
+package application.dto;
+
+import application.entities.Status;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.*;
+
+/**
+ * The outcome of a status change for one order: its status afterwards, whether the change moved it, and why not if
+ * the change was refused
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@ToString
+@Getter
+@Setter
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class OrderStatusChangeDTO {
+
+    private int orderId;
+
+    private Integer customerId;
+
+    private Status status;
+
+    private boolean changed;
+
+    private String error;
+}
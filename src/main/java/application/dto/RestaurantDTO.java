@@ -1,7 +1,6 @@
 package application.dto;
 
 import application.entities.Item;
-import application.entities.Rating;
 import application.entities.Restaurant;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import javafx.beans.property.SimpleStringProperty;
@@ -32,10 +31,15 @@ public class RestaurantDTO {
 
     private String rating = "0";
 
+    private Double latitude;
+    private Double longitude;
+
     public RestaurantDTO(Restaurant restaurant)
     {
         this.id=restaurant.getId();
         this.name=restaurant.getName();
+        this.latitude=restaurant.getLatitude();
+        this.longitude=restaurant.getLongitude();
 
         List<ItemDTO> itemDTOS = new ArrayList<>();
         List<Item> items = restaurant.getItems();
@@ -45,17 +49,27 @@ public class RestaurantDTO {
         }
         this.setItems(itemDTOS);
 
-        List<Rating> ratings = restaurant.getRatings();
-        if(ratings!=null && ratings.size()>0) {
-            float sum = 0;
-            for (Rating r : ratings) {
-                sum += r.getRate();
-            }
-            sum = sum / ratings.size();
+        this.rating = restaurant.getRatingCount() > 0 ? formatRating(restaurant.getRatingSum(), restaurant.getRatingCount())
+                : "0.0";
+    }
 
-            this.rating = sum+" ("+ratings.size()+")";
-        }
-        else rating="0.0";
+    public RestaurantDTO(RestaurantSummary summary, List<ItemDTO> items)
+    {
+        this.id=summary.getId();
+        this.name=summary.getName();
+        this.latitude=summary.getLatitude();
+        this.longitude=summary.getLongitude();
+        this.items=items;
+        this.rating = summary.getRatingCount() > 0 ? formatRating(summary.getRatingSum(), summary.getRatingCount())
+                : "0.0";
+    }
+
+    /**
+     * Average rate followed by the number of ratings, as shown in the restaurant table
+     */
+    private static String formatRating(float sum, int count)
+    {
+        return sum / count + " (" + count + ")";
     }
 
     public StringProperty getItemsNumberProperty()
@@ -0,0 +1,21 @@
+package application.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Restaurant row with its rating aggregate and location, selected by a JPQL constructor expression without loading the entity
+ */
+@Getter
+@AllArgsConstructor
+public class RestaurantSummary {
+
+    private int id;
+    private String name;
+
+    private long ratingSum;
+    private int ratingCount;
+
+    private Double latitude;
+    private Double longitude;
+}
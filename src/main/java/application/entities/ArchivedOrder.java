@@ -0,0 +1,35 @@
+package application.entities;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * A delivered order moved out of order_table once it is older than the archive horizon. The users, restaurant and
+ * items are kept as plain ids, so they can still be deleted without touching the archive.
+ */
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+@Table(name = "order_archive", indexes = {@Index(name = "order_archive_created_idx", columnList = "createdAt"),
+        @Index(name = "order_archive_customer_idx", columnList = "customerId")})
+public class ArchivedOrder {
+
+    @Id
+    private int id;
+
+    private Integer customerId;
+
+    private Integer courierId;
+
+    private Integer restaurantId;
+
+    private Instant createdAt;
+
+    private Status status;
+}
@@ -0,0 +1,26 @@
+package application.entities;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+@Table(name = "ordered_item_archive", indexes = @Index(name = "ordered_item_archive_order_idx",
+        columnList = "orderId"))
+public class ArchivedOrderedItem {
+
+    @Id
+    private int id;
+
+    private Integer orderId;
+
+    private Integer itemId;
+
+    private int quantity;
+}
@@ -5,6 +5,7 @@ import lombok.*;
 import lombok.experimental.SuperBuilder;
 
 import javax.persistence.*;
+import java.time.Instant;
 import java.util.List;
 
 @Entity
@@ -17,7 +18,16 @@ import java.util.List;
 @DiscriminatorValue("DELIVERY")
 public class DeliveryUser extends User {
 
-    @OneToMany(mappedBy = "courier", fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "courier")
     @JsonManagedReference
     private List<Order> orders;
+
+    /**
+     * The last position the courier reported, written behind from memory, so it is a few seconds old at most
+     */
+    private Double latitude;
+
+    private Double longitude;
+
+    private Instant locatedAt;
 }
@@ -2,6 +2,8 @@ package application.entities;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
@@ -12,6 +14,9 @@ import javax.persistence.*;
 @Getter
 @Setter
 @ToString
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(indexes = @Index(name = "discount_restaurant_idx", columnList = "disc_restaurant_id"))
 public class Discount {
 
     @Id
@@ -22,7 +27,7 @@ public class Discount {
 
     private int percentage;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn
     @JsonBackReference
     private Restaurant discRestaurant;
@@ -2,8 +2,8 @@ package application.entities;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import lombok.*;
-import org.hibernate.annotations.Fetch;
-import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.List;
@@ -14,6 +14,8 @@ import java.util.List;
 @AllArgsConstructor
 @Getter
 @Setter
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Item {
 
     @Id
@@ -24,13 +26,18 @@ public class Item {
     private int stock;
     private float price;
 
+    /**
+     * Checked when a loaded item is saved, so an edit cannot overwrite the stock taken by an order
+     */
+    @Version
+    private long version;
+
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn
     @JsonBackReference
     private Restaurant restaurant;
 
-    @OneToMany(mappedBy = "item", fetch = FetchType.EAGER)
-    @Fetch(FetchMode.SELECT)
+    @OneToMany(mappedBy = "item")
     @JsonBackReference
     private List<OrderedItem> orderedItems;
 
@@ -3,11 +3,9 @@ package application.entities;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import lombok.*;
-import org.hibernate.annotations.Fetch;
-import org.hibernate.annotations.FetchMode;
 
 import javax.persistence.*;
-import java.time.LocalDateTime;
+import java.time.Instant;
 import java.util.List;
 
 @Entity
@@ -17,11 +15,18 @@ import java.util.List;
 @Getter
 @Setter
 @ToString
-@Table(name="order_table")
+@Table(name="order_table", indexes = {@Index(name = "order_status_idx", columnList = "status"),
+        @Index(name = "order_created_idx", columnList = "createdAt")})
+@NamedEntityGraph(name = "Order.customerAndCourier",
+        attributeNodes = {@NamedAttributeNode("customer"), @NamedAttributeNode("courier")})
 public class Order {
 
+    /**
+     * Taken from a pooled sequence, 50 ids per round trip, so that new rows can be inserted in JDBC batches
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_seq")
+    @SequenceGenerator(name = "order_seq", sequenceName = "order_seq", allocationSize = 50)
     private int id;
 
     @ManyToOne(fetch = FetchType.EAGER)
@@ -34,12 +39,22 @@ public class Order {
     @JsonBackReference
     private DeliveryUser courier;
 
-    @OneToMany(mappedBy = "orderObj",fetch = FetchType.EAGER)
-    @Fetch(FetchMode.SELECT)
+    /**
+     * The restaurant of the ordered items, kept on the order so the history can be filtered by it through an index
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn
+    @JsonBackReference
+    private Restaurant restaurant;
+
+    @OneToMany(mappedBy = "orderObj")
     @JsonManagedReference
     private List<OrderedItem> orderedItems;
 
-    private String datetime;
+    /**
+     * Stored as a timestamp, so orders can be filtered, sorted and archived by age through an index
+     */
+    private Instant createdAt;
 
     private Status status;
 }
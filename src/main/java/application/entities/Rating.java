@@ -12,6 +12,9 @@ import javax.persistence.*;
 @Getter
 @Setter
 @ToString
+@Table(indexes = @Index(name = "rating_user_idx", columnList = "user_id"))
+@NamedEntityGraph(name = "Rating.userAndRestaurant",
+        attributeNodes = {@NamedAttributeNode("user"), @NamedAttributeNode("ratedRestaurant")})
 public class Rating {
 
     @Id
@@ -3,8 +3,6 @@ package application.entities;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
-import org.hibernate.annotations.Fetch;
-import org.hibernate.annotations.FetchMode;
 
 import javax.persistence.*;
 import java.util.List;
@@ -17,22 +15,25 @@ import java.util.List;
 @Setter
 @ToString
 @SuperBuilder
+@NamedEntityGraph(name = "RegularUser.favourites",
+        attributeNodes = @NamedAttributeNode(value = "favourites", subgraph = "favourite"),
+        subgraphs = @NamedSubgraph(name = "favourite", attributeNodes = @NamedAttributeNode("favouriteRestaurant")))
+@NamedEntityGraph(name = "RegularUser.ratings",
+        attributeNodes = @NamedAttributeNode(value = "ratings", subgraph = "rating"),
+        subgraphs = @NamedSubgraph(name = "rating", attributeNodes = @NamedAttributeNode("ratedRestaurant")))
 public class RegularUser extends User {
 
     private float wallet;
 
-    @OneToMany(mappedBy = "customer", fetch = FetchType.EAGER)
-    @Fetch(value = FetchMode.SELECT)
+    @OneToMany(mappedBy = "customer")
     @JsonManagedReference
     private List<Order> orders;
 
-    @OneToMany(mappedBy = "regularUser", fetch = FetchType.EAGER)
-    @Fetch(value = FetchMode.SELECT)
+    @OneToMany(mappedBy = "regularUser")
     @JsonManagedReference
     private List<UserFavouriteRestaurant> favourites;
 
-    @OneToMany(mappedBy = "user", fetch = FetchType.EAGER)
-    @Fetch(value = FetchMode.SELECT)
+    @OneToMany(mappedBy = "user")
     @JsonManagedReference
     private List<Rating> ratings;
 }
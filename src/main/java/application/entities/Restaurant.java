@@ -2,8 +2,10 @@ package application.entities;
 
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import lombok.*;
-import org.hibernate.annotations.Fetch;
-import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
 import javax.persistence.*;
 import java.util.List;
@@ -15,6 +17,11 @@ import java.util.List;
 @Getter
 @Setter
 @ToString
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NamedEntityGraph(name = "Restaurant.items", attributeNodes = @NamedAttributeNode("items"))
+@NamedEntityGraph(name = "Restaurant.discounts", attributeNodes = @NamedAttributeNode("discounts"))
 public class Restaurant {
 
     @Id
@@ -22,22 +29,45 @@ public class Restaurant {
     private int id;
     private String name;
 
-    @OneToMany(mappedBy = "restaurant", fetch = FetchType.EAGER)
+    /**
+     * Where couriers pick the orders up, unknown for restaurants which have not set it
+     */
+    private Double latitude;
+    private Double longitude;
+
+    /**
+     * Sum and number of the restaurant's ratings, changed by the rating services only, under a lock on the
+     * restaurant's row. Restaurants are updated dynamically, so saving one does not overwrite them.
+     */
+    @Column(nullable = false)
+    private long ratingSum;
+    @Column(nullable = false)
+    private int ratingCount;
+
+    /**
+     * Incremented in the same transaction as any change to the restaurant's name, items or discounts, so clients
+     * can tell whether the menu they hold is still current
+     */
+    @Column(nullable = false)
+    private long menuVersion;
+
+    @OneToMany(mappedBy = "restaurant")
+    @BatchSize(size = 100)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JsonManagedReference
     private List<Item> items;
 
-    @OneToMany(mappedBy = "favouriteRestaurant", fetch = FetchType.EAGER)
-    @Fetch(FetchMode.SELECT)
+    @OneToMany(mappedBy = "favouriteRestaurant")
     @JsonManagedReference
     private List<UserFavouriteRestaurant> users;
 
-    @OneToMany(mappedBy = "ratedRestaurant", fetch = FetchType.EAGER)
-    @Fetch(FetchMode.SELECT)
+    @OneToMany(mappedBy = "ratedRestaurant")
+    @BatchSize(size = 100)
     @JsonManagedReference
     private List<Rating> ratings;
 
-    @OneToMany(mappedBy = "discRestaurant", fetch = FetchType.EAGER)
-    @Fetch(FetchMode.SELECT)
+    @OneToMany(mappedBy = "discRestaurant")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @JsonManagedReference
     private List<Discount> discounts;
 }
@@ -1,5 +1,38 @@
 package application.entities;
 
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
 public enum Status {
-    CREATED, IN_PROGRESS, DELIVERED
+    CREATED, IN_PROGRESS, DELIVERED;
+
+    /**
+     * The statuses an order in each status can move to
+     */
+    private static final Map<Status, Set<Status>> TRANSITIONS = new EnumMap<>(Status.class);
+
+    static {
+        TRANSITIONS.put(CREATED, EnumSet.of(IN_PROGRESS));
+        TRANSITIONS.put(IN_PROGRESS, EnumSet.of(DELIVERED));
+        TRANSITIONS.put(DELIVERED, EnumSet.noneOf(Status.class));
+    }
+
+    public boolean canMoveTo(Status next) {
+        return TRANSITIONS.get(this).contains(next);
+    }
+
+    /**
+     * @return the statuses from which an order can move to the given one
+     */
+    public static Set<Status> before(Status next) {
+        Set<Status> before = EnumSet.noneOf(Status.class);
+        for (Status status : values()) {
+            if (status.canMoveTo(next)) {
+                before.add(status);
+            }
+        }
+        return before;
+    }
 }
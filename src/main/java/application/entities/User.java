@@ -17,6 +17,7 @@ import java.util.List;
 @SuperBuilder
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name="userType", discriminatorType = DiscriminatorType.STRING)
+@Table(indexes = @Index(name = "user_type_idx", columnList = "userType"))
 public class User {
 
     @Id
@@ -26,6 +27,12 @@ public class User {
     private String username;
     private String password;
 
+    /**
+     * Checked when a loaded user is saved, the conditional wallet updates increment it too
+     */
+    @Version
+    private long version;
+
     @Column(updatable = false, insertable = false)
     @Enumerated(EnumType.STRING)
     protected UserType userType;
@@ -2,14 +2,31 @@ package application.repositories;
 
 import application.entities.Item;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface ItemRepository extends JpaRepository<Item,Integer> {
+public interface ItemRepository extends JpaRepository<Item,Integer>, ItemRepositoryCustom {
 
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Item findByName(String name);
 
+    /**
+     * Cached until the next change to the item table made through Hibernate. The stock taken by orders does not
+     * clear it, as the ids it returns stay the same and the items themselves are evicted.
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Item> findByRestaurantId(Integer id);
+
+    /**
+     * The ordered items of one restaurant, read without locking them
+     */
+    @Query("select i from Item i where i.id in :ids and i.restaurant.id = :restaurantId order by i.id")
+    List<Item> findForOrder(@Param("ids") Collection<Integer> ids, @Param("restaurantId") int restaurantId);
 }
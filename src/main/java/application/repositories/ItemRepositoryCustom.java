@@ -0,0 +1,15 @@
+package application.repositories;
+
+import java.util.List;
+import java.util.SortedMap;
+
+public interface ItemRepositoryCustom {
+
+    /**
+     * Takes each quantity from its item's stock with "update item set stock = stock - ? where id = ? and
+     * stock >= ?", the updates of one order sent as a single JDBC batch in id order
+     *
+     * @return the ids of the items which held too little, empty if every quantity was taken
+     */
+    List<Integer> reserveStock(SortedMap<Integer, Integer> quantities);
+}
@@ -0,0 +1,69 @@
+package application.repositories;
+
+import application.entities.Item;
+import org.hibernate.Session;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * The stock updates run on the JDBC connection of the current transaction. A bulk JPQL update would drop every cached
+ * item, so only the items the order took from are evicted from the second-level cache instead.
+ */
+public class ItemRepositoryImpl implements ItemRepositoryCustom {
+
+    private static final String RESERVE =
+            "update item set stock = stock - ?, version = version + 1 where id = ? and stock >= ?";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Integer> reserveStock(SortedMap<Integer, Integer> quantities) {
+        int[] counts = entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement update = connection.prepareStatement(RESERVE)) {
+                for (Map.Entry<Integer, Integer> quantity : quantities.entrySet()) {
+                    update.setInt(1, quantity.getValue());
+                    update.setInt(2, quantity.getKey());
+                    update.setInt(3, quantity.getValue());
+                    update.addBatch();
+                }
+                return update.executeBatch();
+            }
+        });
+        evict(new ArrayList<>(quantities.keySet()));
+
+        List<Integer> tooLow = new ArrayList<>();
+        int i = 0;
+        for (Integer id : quantities.keySet()) {
+            if (counts[i++] == 0) {
+                tooLow.add(id);
+            }
+        }
+        return tooLow;
+    }
+
+    /**
+     * Evicts now and again once the transaction completes, so a read between the two cannot keep the old stock cached
+     */
+    private void evict(List<Integer> ids) {
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        ids.forEach(id -> cache.evict(Item.class, id));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    ids.forEach(id -> cache.evict(Item.class, id));
+                }
+            });
+        }
+    }
+}
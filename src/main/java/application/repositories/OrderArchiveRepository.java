@@ -0,0 +1,31 @@
+package application.repositories;
+
+import application.entities.ArchivedOrder;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+
+@Repository
+public interface OrderArchiveRepository extends JpaRepository<ArchivedOrder, Integer> {
+
+    /**
+     * Copies the orders into order_archive in one statement, without loading them
+     */
+    @Modifying
+    @Query(value = "insert into order_archive (id, customer_id, courier_id, restaurant_id, created_at, status)"
+            + " select id, customer_id, courier_id, restaurant_id, created_at, status from order_table"
+            + " where id in (:ids)", nativeQuery = true)
+    int copyOrders(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Copies the lines of the orders into ordered_item_archive in one statement
+     */
+    @Modifying
+    @Query(value = "insert into ordered_item_archive (id, order_id, item_id, quantity)"
+            + " select id, order_id, item_id, quantity from ordered_item where order_id in (:ids)", nativeQuery = true)
+    int copyOrderedItems(@Param("ids") Collection<Integer> ids);
+}
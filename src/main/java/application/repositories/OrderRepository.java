@@ -1,9 +1,79 @@
 package application.repositories;
 
 import application.entities.Order;
+import application.entities.Status;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Integer> {
+
+    @Override
+    @EntityGraph("Order.customerAndCourier")
+    List<Order> findAll();
+
+    @EntityGraph("Order.customerAndCourier")
+    Slice<Order> findAllBy(Pageable pageable);
+
+    /**
+     * Orders older than the given id matching the criteria which are not null, newest first. Starting after the last
+     * order of the previous page, a page costs the same however many orders came before it.
+     */
+    @EntityGraph("Order.customerAndCourier")
+    @Query("select o from Order o where o.id < :before"
+            + " and (:status is null or o.status = :status)"
+            + " and (:courierId is null or o.courier.id = :courierId)"
+            + " and (:customerId is null or o.customer.id = :customerId)"
+            + " and (:restaurantId is null or o.restaurant.id = :restaurantId)"
+            + " and (:from is null or o.createdAt >= :from)"
+            + " and (:to is null or o.createdAt < :to)"
+            + " order by o.id desc")
+    List<Order> findHistory(@Param("before") int before, @Param("status") Status status,
+                            @Param("courierId") Integer courierId, @Param("customerId") Integer customerId,
+                            @Param("restaurantId") Integer restaurantId, @Param("from") Instant from,
+                            @Param("to") Instant to, Pageable pageable);
+
+    /**
+     * Ids of the orders in the given status created before the given time, oldest first, read from the creation
+     * time index
+     */
+    @Query("select o.id from Order o where o.status = :status and o.createdAt < :before order by o.createdAt")
+    List<Integer> findIdsCreatedBefore(@Param("status") Status status, @Param("before") Instant before,
+                                       Pageable pageable);
+
+    /**
+     * 1 if the user placed or carries the order, else 0
+     */
+    @Query("select count(o) from Order o left join o.customer customer left join o.courier courier"
+            + " where o.id = :orderId and (customer.id = :userId or courier.id = :userId)")
+    long countByIdAndUser(@Param("orderId") int orderId, @Param("userId") int userId);
+
+    @Modifying
+    @Query("delete from Order o where o.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Id, status ordinal, customer id and courier id of the orders, locked in id order until the transaction ends
+     */
+    @Query(value = "select id, status, customer_id, courier_id from order_table where id in (:ids) order by id"
+            + " for update", nativeQuery = true)
+    List<Object[]> lockStatuses(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Moves the orders still in one of the given statuses in one statement
+     */
+    @Modifying
+    @Query("update Order o set o.status = :to where o.id in :ids and o.status in :from")
+    int updateStatus(@Param("ids") Collection<Integer> ids, @Param("from") Collection<Status> from,
+                     @Param("to") Status to);
 }
@@ -2,8 +2,17 @@ package application.repositories;
 
 import application.entities.OrderedItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+
 @Repository
 public interface OrderedItemRepository extends JpaRepository<OrderedItem, Integer> {
+
+    @Modifying
+    @Query("delete from OrderedItem oi where oi.orderObj.id in :orderIds")
+    int deleteByOrderIds(@Param("orderIds") Collection<Integer> orderIds);
 }
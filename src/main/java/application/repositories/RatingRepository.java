@@ -2,9 +2,37 @@ package application.repositories;
 
 import application.entities.OrderedItem;
 import application.entities.Rating;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface RatingRepository extends JpaRepository<Rating, Integer> {
+
+    @EntityGraph("Rating.userAndRestaurant")
+    List<Rating> findByUserId(Integer userId);
+
+    @EntityGraph("Rating.userAndRestaurant")
+    Slice<Rating> findByUserId(Integer userId, Pageable pageable);
+
+    /**
+     * Reads the rating and locks it until the transaction ends, so a change of its rate is computed from the last
+     * committed one. Must be its first read in the transaction, an entity already loaded is not read again.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from Rating r where r.id = :id")
+    Optional<Rating> lockById(@Param("id") int id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from Rating r where r.user.id = :userId and r.ratedRestaurant.id = :restaurantId")
+    Optional<Rating> lockByUserAndRestaurant(@Param("userId") int userId, @Param("restaurantId") int restaurantId);
 }
@@ -1,11 +1,48 @@
 package application.repositories;
 
+import application.dto.ItemSummary;
+import application.dto.RestaurantSummary;
 import application.entities.Restaurant;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
-public interface RestaurantRepository extends JpaRepository<Restaurant,Integer> {
+public interface RestaurantRepository extends JpaRepository<Restaurant,Integer>, RestaurantRepositoryCustom {
 
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Restaurant findByName(String name);
+
+    @EntityGraph("Restaurant.items")
+    Optional<Restaurant> findWithItemsById(int id);
+
+    @EntityGraph("Restaurant.discounts")
+    Optional<Restaurant> findWithDiscountsById(int id);
+
+    String SUMMARY_QUERY = "select new application.dto.RestaurantSummary(r.id, r.name, r.ratingSum, r.ratingCount, "
+            + "r.latitude, r.longitude) from Restaurant r";
+
+    /**
+     * Restaurants with their rating aggregates in one query, none of their associations are loaded
+     */
+    @Query(SUMMARY_QUERY)
+    List<RestaurantSummary> findSummaries(Sort sort);
+
+    @Query(SUMMARY_QUERY)
+    Slice<RestaurantSummary> findSummaries(Pageable pageable);
+
+    @Query("select new application.dto.ItemSummary(i.restaurant.id, i.id, i.name, i.stock, i.price) "
+            + "from Item i where i.restaurant.id in :restaurantIds order by i.id")
+    List<ItemSummary> findItemSummaries(@Param("restaurantIds") Collection<Integer> restaurantIds);
 }
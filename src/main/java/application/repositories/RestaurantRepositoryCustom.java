@@ -0,0 +1,22 @@
+package application.repositories;
+
+public interface RestaurantRepositoryCustom {
+
+    /**
+     * Increments the menu version of the restaurant, locking its row until the transaction ends so concurrent menu
+     * changes never end up with the same version
+     */
+    void bumpMenuVersion(int id);
+
+    /**
+     * Adds a rating change to the aggregates of the restaurant, its row locked until the transaction ends
+     */
+    void addToRatings(int id, long rate, int count);
+
+    /**
+     * Recomputes the rating aggregates of every restaurant from its ratings in one statement
+     *
+     * @return the number of restaurants
+     */
+    int recomputeRatings();
+}
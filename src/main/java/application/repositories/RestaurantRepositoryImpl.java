@@ -0,0 +1,65 @@
+package application.repositories;
+
+import application.entities.Restaurant;
+import org.hibernate.query.NativeQuery;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+
+/**
+ * Restaurants are kept in the second-level cache. A bulk JPQL update of the restaurant table would drop every cached
+ * restaurant, so the counters of one restaurant are changed through its entity, which only drops its own entry.
+ */
+public class RestaurantRepositoryImpl implements RestaurantRepositoryCustom {
+
+    private static final String RECOMPUTE_RATINGS = "update restaurant r set "
+            + "rating_sum = (select coalesce(sum(rating.rate), 0) from rating where rating.restaurant_id = r.id), "
+            + "rating_count = (select count(*) from rating where rating.restaurant_id = r.id)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public void bumpMenuVersion(int id) {
+        Restaurant restaurant = lock(id);
+        if (restaurant != null) {
+            restaurant.setMenuVersion(restaurant.getMenuVersion() + 1);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void addToRatings(int id, long rate, int count) {
+        Restaurant restaurant = lock(id);
+        if (restaurant != null) {
+            restaurant.setRatingSum(restaurant.getRatingSum() + rate);
+            restaurant.setRatingCount(restaurant.getRatingCount() + count);
+        }
+    }
+
+    /**
+     * Pending changes are flushed first, as reading the restaurant again under the lock would discard its own
+     */
+    private Restaurant lock(int id) {
+        Restaurant restaurant = entityManager.find(Restaurant.class, id);
+        if (restaurant != null) {
+            entityManager.flush();
+            entityManager.refresh(restaurant, LockModeType.PESSIMISTIC_WRITE);
+        }
+        return restaurant;
+    }
+
+    /**
+     * Declared to touch the restaurant table only, so Hibernate evicts the cached restaurants rather than every
+     * region of the second-level cache
+     */
+    @Override
+    @Transactional
+    public int recomputeRatings() {
+        return entityManager.createNativeQuery(RECOMPUTE_RATINGS).unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(Restaurant.class).executeUpdate();
+    }
+}
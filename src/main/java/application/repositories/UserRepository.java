@@ -1,15 +1,58 @@
 package application.repositories;
 
+import application.entities.DeliveryUser;
+import application.entities.RegularUser;
+import application.entities.Status;
 import application.entities.User;
 import application.entities.UserType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Integer> {
 
     User findByUsername(String username);
     List<User> findAllByUserType(UserType userType);
+    Slice<User> findAllByUserType(UserType userType, Pageable pageable);
+
+    @EntityGraph("RegularUser.favourites")
+    @Query("select u from RegularUser u where u.id = :id")
+    Optional<RegularUser> findWithFavouritesById(@Param("id") int id);
+
+    @EntityGraph("RegularUser.ratings")
+    @Query("select u from RegularUser u where u.id = :id")
+    Optional<RegularUser> findWithRatingsById(@Param("id") int id);
+
+    /**
+     * Takes the amount from a regular user's wallet in one statement, only if it holds enough
+     *
+     * @return 0 if the wallet held too little
+     */
+    @Modifying
+    @Query("update RegularUser u set u.wallet = u.wallet - :amount, u.version = u.version + 1 "
+            + "where u.id = :id and u.wallet >= :amount")
+    int debitWallet(@Param("id") int id, @Param("amount") float amount);
+
+    /**
+     * The id of every courier with the id of each of its orders in the given statuses, or null if it has none
+     */
+    @Query("select u.id, o.id from DeliveryUser u left join u.orders o on o.status in :statuses")
+    List<Object[]> findActiveOrdersByCourier(@Param("statuses") Collection<Status> statuses);
+
+    @Query("select case when count(u) > 0 then true else false end from DeliveryUser u where u.id = :id")
+    boolean existsCourierById(@Param("id") int id);
+
+    @Query("select u from DeliveryUser u where u.locatedAt > :since")
+    List<DeliveryUser> findCouriersLocatedSince(@Param("since") Instant since);
 }
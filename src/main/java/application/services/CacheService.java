@@ -0,0 +1,12 @@
+package application.services;
+
+import application.dto.CacheRegionDTO;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+public interface CacheService {
+
+    List<CacheRegionDTO> getCacheStatistics();
+}
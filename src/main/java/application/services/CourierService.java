@@ -0,0 +1,12 @@
+package application.services;
+
+import application.services.exceptions.EntityNotFoundException;
+import application.services.exceptions.InvalidDataException;
+import org.springframework.stereotype.Service;
+
+@Service
+public interface CourierService {
+
+    void updateLocation(String courierIdString, String latitudeString, String longitudeString)
+            throws InvalidDataException, EntityNotFoundException;
+}
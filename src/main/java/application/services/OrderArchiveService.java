@@ -0,0 +1,13 @@
+package application.services;
+
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+
+@Service
+public interface OrderArchiveService {
+
+    int archiveOrdersBefore(Instant before);
+
+    void archiveOldOrders();
+}
@@ -6,6 +6,8 @@ import application.entities.Restaurant;
 import application.services.exceptions.EntityNotFoundException;
 import application.services.exceptions.InvalidDataException;
 import application.entities.Order;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -29,5 +31,18 @@ public interface OrderService {
 
     List<OrderDTO> getAllOrders();
 
-    void changeOrderStatus(String idString, String statusString) throws InvalidDataException, EntityNotFoundException;
+    Slice<OrderDTO> getOrders(Pageable pageable);
+
+    OrderPageDTO getOrderHistory(OrderFilterDTO filter, String cursor, int limit) throws InvalidDataException;
+
+    OrderStatusChangeDTO changeOrderStatus(String idString, String statusString)
+            throws InvalidDataException, EntityNotFoundException;
+
+    List<OrderStatusChangeDTO> changeOrderStatuses(List<Integer> ids, String statusString)
+            throws InvalidDataException, EntityNotFoundException;
+
+    /**
+     * Whether the user is the customer who placed the order or the courier carrying it
+     */
+    boolean isOrderOf(int orderId, int userId);
 }
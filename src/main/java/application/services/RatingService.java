@@ -4,6 +4,8 @@ import application.dto.RatingDTO;
 import application.dto.UserDTO;
 import application.services.exceptions.EntityNotFoundException;
 import application.services.exceptions.InvalidDataException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -14,7 +16,11 @@ public interface RatingService {
 
     List<RatingDTO> getRatings(String idString) throws InvalidDataException;
 
+    Slice<RatingDTO> getRatings(String idString, Pageable pageable) throws InvalidDataException;
+
     UserDTO addRating(String restaurantId, String rateString, String userId) throws InvalidDataException;
 
     void updateRating(String idString, String rateString, UserDTO user) throws InvalidDataException, EntityNotFoundException;
+
+    void reconcileRestaurantRatings();
 }
@@ -1,11 +1,14 @@
 package application.services;
 
 import application.dto.DiscountDTO;
+import application.dto.MenuDTO;
 import application.services.exceptions.EntityNotFoundException;
 import application.services.exceptions.InvalidDataException;
 import application.dto.ItemDTO;
 import application.dto.RestaurantDTO;
 import application.entities.Restaurant;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -17,10 +20,15 @@ public interface RestaurantService {
 
     List<RestaurantDTO> getAllRestaurants();
 
+    Slice<RestaurantDTO> getRestaurants(Pageable pageable);
+
     public Restaurant createRestaurant(String nameString) throws InvalidDataException;
 
     Restaurant updateRestaurant(String idString, String name) throws InvalidDataException, EntityNotFoundException;
 
+    void updateRestaurantLocation(String idString, String latitudeString, String longitudeString)
+            throws InvalidDataException, EntityNotFoundException;
+
     void deleteRestaurant(String idString) throws InvalidDataException, EntityNotFoundException;
 
     List<ItemDTO> getRestaurantItems(String idString) throws InvalidDataException, EntityNotFoundException;
@@ -32,4 +40,8 @@ public interface RestaurantService {
     void addDiscount(String idString, String minimumNbItems, String discountPercentage) throws InvalidDataException, EntityNotFoundException;
 
     void deleteDiscount(String restaurantId, String discountId) throws InvalidDataException, EntityNotFoundException;
+
+    long getMenuVersion(String idString) throws InvalidDataException, EntityNotFoundException;
+
+    MenuDTO getMenu(String idString) throws InvalidDataException, EntityNotFoundException;
 }
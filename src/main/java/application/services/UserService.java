@@ -7,6 +7,8 @@ import application.services.exceptions.InvalidDataException;
 import application.services.exceptions.UserNotFoundException;
 import application.dto.UserDTO;
 import application.entities.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -22,6 +24,8 @@ public interface UserService {
 
     List<UserDTO> getAllRegularUsers();
 
+    Slice<UserDTO> getRegularUsers(Pageable pageable);
+
     UserDTO loginUser(String username, String password) throws UserNotFoundException, IncorrectPasswordException;
 
     UserDTO getUser(String idString) throws UserNotFoundException, InvalidDataException;
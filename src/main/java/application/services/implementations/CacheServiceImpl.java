@@ -0,0 +1,40 @@
+package application.services.implementations;
+
+import application.dto.CacheRegionDTO;
+import application.services.CacheService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Service
+public class CacheServiceImpl implements CacheService {
+
+    private Statistics statistics;
+
+    @Autowired
+    public CacheServiceImpl(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Override
+    public List<CacheRegionDTO> getCacheStatistics() {
+        String[] regions = statistics.getSecondLevelCacheRegionNames();
+        Arrays.sort(regions);
+        List<CacheRegionDTO> regionDTOS = new ArrayList<>();
+        for (String region : regions) {
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+            if (regionStatistics != null) {
+                regionDTOS.add(new CacheRegionDTO(region, regionStatistics.getHitCount(),
+                        regionStatistics.getMissCount(), regionStatistics.getPutCount()));
+            }
+        }
+        return regionDTOS;
+    }
+}
@@ -0,0 +1,89 @@
+package application.services.implementations;
+
+import application.services.exceptions.EntityNotFoundException;
+import application.services.exceptions.InvalidDataException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs a unit of work in a transaction, and again in a new one when it failed on a concurrent update: a version
+ * conflict on a read-modify-write, a deadlock or a lock timeout. Attempts are spaced by a random backoff doubling
+ * each time, so clients that collided do not retry in step.
+ */
+@Component
+public class ConcurrencyRetry {
+
+    public interface Work<T> {
+        T run() throws InvalidDataException, EntityNotFoundException;
+    }
+
+    /**
+     * Carries the checked exceptions of the work out of the transaction callback, rolling it back
+     */
+    private static class WorkFailed extends RuntimeException {
+        WorkFailed(Exception cause) {
+            super(cause);
+        }
+    }
+
+    private final TransactionOperations transactions;
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    @Autowired
+    public ConcurrencyRetry(PlatformTransactionManager transactionManager,
+                            @Value("${transactions.retry.max-attempts:5}") int maxAttempts,
+                            @Value("${transactions.retry.backoff-millis:10}") long backoffMillis) {
+        this(new TransactionTemplate(transactionManager), maxAttempts, backoffMillis);
+    }
+
+    public ConcurrencyRetry(TransactionOperations transactions, int maxAttempts, long backoffMillis) {
+        this.transactions = transactions;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+    }
+
+    public <T> T execute(Work<T> work) throws InvalidDataException, EntityNotFoundException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactions.execute(status -> {
+                    try {
+                        return work.run();
+                    } catch (InvalidDataException | EntityNotFoundException e) {
+                        throw new WorkFailed(e);
+                    }
+                });
+            } catch (WorkFailed e) {
+                if (e.getCause() instanceof InvalidDataException) {
+                    throw (InvalidDataException) e.getCause();
+                }
+                throw (EntityNotFoundException) e.getCause();
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts || !backOff(attempt)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return false if the thread was interrupted while waiting
+     */
+    private boolean backOff(int attempt) {
+        long bound = backoffMillis << Math.min(attempt - 1, 10);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package application.services.implementations;
+
+import application.services.exceptions.InvalidDataException;
+
+/**
+ * Parses the latitudes and longitudes sent by clients, in decimal degrees
+ */
+final class Coordinates {
+
+    private Coordinates() {
+    }
+
+    static double latitude(String latitude) throws InvalidDataException {
+        return parse(latitude, 90, "latitude");
+    }
+
+    static double longitude(String longitude) throws InvalidDataException {
+        return parse(longitude, 180, "longitude");
+    }
+
+    private static double parse(String degrees, double limit, String name) throws InvalidDataException {
+        double value;
+        try {
+            value = Double.parseDouble(degrees);
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new InvalidDataException("Invalid " + name + "!");
+        }
+        if (Double.isNaN(value) || value < -limit || value > limit) {
+            throw new InvalidDataException("Invalid " + name + "!");
+        }
+        return value;
+    }
+}
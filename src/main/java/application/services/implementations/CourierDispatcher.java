@@ -0,0 +1,318 @@
+package application.services.implementations;
+
+import application.entities.Status;
+import application.repositories.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+/**
+ * The couriers ordered by their number of created or in progress orders, so a new order goes to the nearest courier
+ * with room for it, or else to the least loaded one, without reading the couriers from the database. Built from the
+ * orders at startup and rebuilt periodically, which also picks up couriers added since and corrects any drift.
+ * A rebuild reads the active orders by id, so it can tell which of the assignments and deliveries made meanwhile it
+ * already read: those still in an open transaction, or committed while it was reading.
+ */
+@Component
+public class CourierDispatcher {
+
+    private static final List<Status> ACTIVE = Arrays.asList(Status.CREATED, Status.IN_PROGRESS);
+
+    private static class CourierLoad {
+        final int courierId;
+        int activeOrders;
+
+        CourierLoad(int courierId, int activeOrders) {
+            this.courierId = courierId;
+            this.activeOrders = activeOrders;
+        }
+    }
+
+    private static final Comparator<CourierLoad> LEAST_LOADED = Comparator
+            .<CourierLoad>comparingInt(load -> load.activeOrders).thenComparingInt(load -> load.courierId);
+
+    /**
+     * An order counted for a courier in a transaction which did not complete yet. The order id is only known once
+     * the order is saved.
+     */
+    private class Assignment implements TransactionSynchronization {
+        final int courierId;
+        Integer orderId;
+
+        Assignment(int courierId) {
+            this.courierId = courierId;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            completed(this, status == STATUS_COMMITTED);
+        }
+    }
+
+    /**
+     * An order delivered in a transaction which did not complete yet, counted off once it commits unless a rebuild
+     * already read it as delivered
+     */
+    private class Delivery implements TransactionSynchronization {
+        final int courierId;
+        final int orderId;
+        boolean countedOff = false;
+
+        Delivery(int courierId, int orderId) {
+            this.courierId = courierId;
+            this.orderId = orderId;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            completed(this, status == STATUS_COMMITTED);
+        }
+    }
+
+    /**
+     * One more order, one delivered, or none for a courier registered while a rebuild was reading
+     */
+    private static class Change {
+        final int courierId;
+        final Integer orderId;
+        final int orders;
+
+        Change(int courierId, Integer orderId, int orders) {
+            this.courierId = courierId;
+            this.orderId = orderId;
+            this.orders = orders;
+        }
+    }
+
+    private final UserRepository userRepository;
+    private final CourierLocations locations;
+    private final int capacity;
+
+    private NavigableSet<CourierLoad> byLoad = new TreeSet<>(LEAST_LOADED);
+    private Map<Integer, CourierLoad> byCourier = new HashMap<>();
+
+    private final Set<Assignment> uncommitted = new HashSet<>();
+    private final Set<Delivery> undelivered = new HashSet<>();
+
+    /**
+     * Changes committed since the running rebuild started reading, null if there is none
+     */
+    private List<Change> committedDuringRebuild;
+
+    private final Object rebuilding = new Object();
+    private volatile boolean built = false;
+
+    @Autowired
+    public CourierDispatcher(UserRepository userRepository, CourierLocations locations,
+                             @Value("${orders.dispatch.courier-capacity:3}") int capacity) {
+        this.userRepository = userRepository;
+        this.locations = locations;
+        this.capacity = capacity;
+    }
+
+    /**
+     * The orders are read without holding the lock assignments take, so orders are dispatched meanwhile
+     */
+    @Scheduled(fixedDelayString = "${orders.dispatch.rebuild-interval-millis:600000}")
+    public void rebuild() {
+        synchronized (rebuilding) {
+            synchronized (this) {
+                committedDuringRebuild = new ArrayList<>();
+            }
+            Map<Integer, Set<Integer>> activeOrders = new HashMap<>();
+            try {
+                for (Object[] row : userRepository.findActiveOrdersByCourier(ACTIVE)) {
+                    Set<Integer> orders = activeOrders.computeIfAbsent((Integer) row[0], id -> new HashSet<>());
+                    if (row[1] != null) {
+                        orders.add(((Number) row[1]).intValue());
+                    }
+                }
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    committedDuringRebuild = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                install(activeOrders);
+            }
+            built = true;
+        }
+    }
+
+    /**
+     * An assignment is added unless its order was read, a delivery counted off only if its order was read as active
+     */
+    private void install(Map<Integer, Set<Integer>> activeOrders) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        activeOrders.forEach((courierId, orders) -> counts.put(courierId, orders.size()));
+        for (Assignment assignment : uncommitted) {
+            if (!isRead(activeOrders, assignment.courierId, assignment.orderId)) {
+                counts.merge(assignment.courierId, 1, Integer::sum);
+            }
+        }
+        for (Delivery delivery : undelivered) {
+            delivery.countedOff = !isRead(activeOrders, delivery.courierId, delivery.orderId);
+        }
+        for (Change change : committedDuringRebuild) {
+            boolean read = isRead(activeOrders, change.courierId, change.orderId);
+            boolean missed = change.orders > 0 ? !read : change.orders < 0 && read;
+            counts.merge(change.courierId, missed ? change.orders : 0, Integer::sum);
+        }
+
+        NavigableSet<CourierLoad> loads = new TreeSet<>(LEAST_LOADED);
+        Map<Integer, CourierLoad> couriers = new HashMap<>();
+        counts.forEach((courierId, count) -> {
+            CourierLoad load = new CourierLoad(courierId, Math.max(count, 0));
+            loads.add(load);
+            couriers.put(courierId, load);
+        });
+        byLoad = loads;
+        byCourier = couriers;
+        committedDuringRebuild = null;
+    }
+
+    private static boolean isRead(Map<Integer, Set<Integer>> activeOrders, int courierId, Integer orderId) {
+        return orderId != null && activeOrders.getOrDefault(courierId, Collections.emptySet()).contains(orderId);
+    }
+
+    /**
+     * Counts one more order for the nearest courier to the pickup point with fewer orders than the capacity, or for
+     * the least loaded courier if the point is unknown or no such courier is near it. Inside a transaction the
+     * order is counted off again if it rolls back.
+     *
+     * @return the id of the courier, or null if there is none
+     */
+    public Integer assign(Double latitude, Double longitude) {
+        if (!built) {
+            rebuild();
+        }
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        Assignment assignment;
+        synchronized (this) {
+            CourierLoad chosen = null;
+            if (latitude != null && longitude != null) {
+                Integer nearest = locations.findNearest(latitude, longitude, id -> {
+                    CourierLoad load = byCourier.get(id);
+                    return load != null && load.activeOrders < capacity;
+                });
+                chosen = nearest == null ? null : byCourier.get(nearest);
+            }
+            if (chosen == null) {
+                chosen = byLoad.isEmpty() ? null : byLoad.first();
+            }
+            if (chosen == null) {
+                return null;
+            }
+            byLoad.remove(chosen);
+            chosen.activeOrders++;
+            byLoad.add(chosen);
+            assignment = new Assignment(chosen.courierId);
+            if (inTransaction) {
+                uncommitted.add(assignment);
+            } else {
+                committed(chosen.courierId, null, 1);
+            }
+        }
+        if (inTransaction) {
+            TransactionSynchronizationManager.registerSynchronization(assignment);
+        }
+        return assignment.courierId;
+    }
+
+    /**
+     * Tells which order the courier was assigned in the current transaction, once the order has its id
+     */
+    public synchronized void placed(int courierId, int orderId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (uncommitted.contains(synchronization)) {
+                Assignment assignment = (Assignment) synchronization;
+                if (assignment.courierId == courierId && assignment.orderId == null) {
+                    assignment.orderId = orderId;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts off an order the courier delivered, once the transaction changing its status commits
+     */
+    public void delivered(int courierId, int orderId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            Delivery delivery = new Delivery(courierId, orderId);
+            synchronized (this) {
+                undelivered.add(delivery);
+            }
+            TransactionSynchronizationManager.registerSynchronization(delivery);
+        } else {
+            synchronized (this) {
+                committed(courierId, orderId, -1);
+                decrement(courierId);
+            }
+        }
+    }
+
+    /**
+     * Adds a courier created since the last rebuild, with no orders yet. Also kept by a rebuild whose count started
+     * before the courier was added.
+     */
+    public synchronized void register(int courierId) {
+        if (!byCourier.containsKey(courierId)) {
+            CourierLoad load = new CourierLoad(courierId, 0);
+            byLoad.add(load);
+            byCourier.put(courierId, load);
+        }
+        committed(courierId, null, 0);
+    }
+
+    public synchronized boolean isCourier(int courierId) {
+        return byCourier.containsKey(courierId);
+    }
+
+    public synchronized int getActiveOrders(int courierId) {
+        CourierLoad load = byCourier.get(courierId);
+        return load == null ? 0 : load.activeOrders;
+    }
+
+    private synchronized void completed(Assignment assignment, boolean committed) {
+        uncommitted.remove(assignment);
+        if (committed) {
+            committed(assignment.courierId, assignment.orderId, 1);
+        } else {
+            decrement(assignment.courierId);
+        }
+    }
+
+    private synchronized void completed(Delivery delivery, boolean committed) {
+        undelivered.remove(delivery);
+        if (committed) {
+            committed(delivery.courierId, delivery.orderId, -1);
+            if (!delivery.countedOff) {
+                decrement(delivery.courierId);
+            }
+        }
+    }
+
+    private void committed(int courierId, Integer orderId, int orders) {
+        if (committedDuringRebuild != null) {
+            committedDuringRebuild.add(new Change(courierId, orderId, orders));
+        }
+    }
+
+    private void decrement(int courierId) {
+        CourierLoad load = byCourier.get(courierId);
+        if (load != null && load.activeOrders > 0 && byLoad.remove(load)) {
+            load.activeOrders--;
+            byLoad.add(load);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package application.services.implementations;
+
+import application.entities.DeliveryUser;
+import application.entities.User;
+import application.repositories.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+
+/**
+ * The last reported position of each courier, indexed in a grid of square cells of latitude and longitude so the
+ * couriers near a point are found by looking at the cells around it only. Positions are updated in memory and
+ * written to the database in batches at an interval, so frequent location reports cost no statement each.
+ */
+@Component
+public class CourierLocations {
+
+    private static final double KM_PER_DEGREE = 111.2;
+
+    private static final int FLUSH_CHUNK = 500;
+
+    private static final class Position {
+        final double latitude;
+        final double longitude;
+        final long reportedAt;
+        final long cell;
+
+        Position(double latitude, double longitude, long reportedAt, long cell) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.reportedAt = reportedAt;
+            this.cell = cell;
+        }
+    }
+
+    private final UserRepository userRepository;
+    private final ConcurrencyRetry retry;
+    private final double cellDegrees;
+    private final long maxAgeMillis;
+    private final double searchRadiusKm;
+
+    private final Map<Integer, Position> positions = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Integer>> cells = new ConcurrentHashMap<>();
+    private final Map<Integer, Position> unsaved = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CourierLocations(UserRepository userRepository, ConcurrencyRetry retry,
+                            @Value("${couriers.location.cell-degrees:0.01}") double cellDegrees,
+                            @Value("${couriers.location.max-age-millis:300000}") long maxAgeMillis,
+                            @Value("${orders.dispatch.search-radius-km:10}") double searchRadiusKm) {
+        this.userRepository = userRepository;
+        this.retry = retry;
+        this.cellDegrees = cellDegrees;
+        this.maxAgeMillis = maxAgeMillis;
+        this.searchRadiusKm = searchRadiusKm;
+    }
+
+    /**
+     * Reads back the positions couriers reported before a restart which are still recent enough to dispatch by
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Instant since = Instant.now().minusMillis(maxAgeMillis);
+        for (DeliveryUser courier : userRepository.findCouriersLocatedSince(since)) {
+            if (courier.getLatitude() != null && courier.getLongitude() != null) {
+                place(courier.getId(), courier.getLatitude(), courier.getLongitude(),
+                        courier.getLocatedAt().toEpochMilli());
+            }
+        }
+    }
+
+    public void update(int courierId, double latitude, double longitude) {
+        unsaved.put(courierId, place(courierId, latitude, longitude, System.currentTimeMillis()));
+    }
+
+    private Position place(int courierId, double latitude, double longitude, long reportedAt) {
+        Position position = new Position(latitude, longitude, reportedAt, cellOf(latitude, longitude));
+        Position previous = positions.put(courierId, position);
+        if (previous == null || previous.cell != position.cell) {
+            cells.compute(position.cell, (cell, couriers) -> {
+                Set<Integer> inCell = couriers == null ? ConcurrentHashMap.newKeySet() : couriers;
+                inCell.add(courierId);
+                return inCell;
+            });
+            if (previous != null) {
+                leave(previous.cell, courierId);
+            }
+        }
+        return position;
+    }
+
+    private void leave(long cell, int courierId) {
+        cells.computeIfPresent(cell, (key, couriers) -> {
+            couriers.remove(courierId);
+            return couriers.isEmpty() ? null : couriers;
+        });
+    }
+
+    /**
+     * Looks at the cells in rings of growing size around the point, and stops at the first ring which can only hold
+     * couriers farther than the nearest one found, or beyond the search radius
+     *
+     * @return the id of the nearest courier with a recent position accepted by the filter, or null if there is none
+     * within the search radius
+     */
+    public Integer findNearest(double latitude, double longitude, IntPredicate available) {
+        long oldest = System.currentTimeMillis() - maxAgeMillis;
+        int row = index(latitude + 90);
+        int column = index(longitude + 180);
+        double ringKm = cellDegrees * KM_PER_DEGREE * Math.cos(Math.toRadians(Math.min(Math.abs(latitude), 89)));
+        int maxRing = (int) Math.ceil(searchRadiusKm / ringKm) + 1;
+
+        Integer nearest = null;
+        double nearestKm = searchRadiusKm;
+        for (int ring = 0; ring <= maxRing && (ring - 1) * ringKm <= nearestKm; ring++) {
+            for (int r = row - ring; r <= row + ring; r++) {
+                int step = r == row - ring || r == row + ring ? 1 : 2 * ring;
+                for (int c = column - ring; c <= column + ring; c += Math.max(step, 1)) {
+                    Set<Integer> couriers = cells.get(key(r, c));
+                    if (couriers == null) {
+                        continue;
+                    }
+                    for (Integer courierId : couriers) {
+                        Position position = positions.get(courierId);
+                        if (position == null || position.cell != key(r, c) || position.reportedAt < oldest) {
+                            continue;
+                        }
+                        double km = distanceKm(latitude, longitude, position.latitude, position.longitude);
+                        if ((nearest == null ? km <= nearestKm : km < nearestKm) && available.test(courierId)) {
+                            nearest = courierId;
+                            nearestKm = km;
+                        }
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Writes the positions reported since the last flush, and forgets couriers which stopped reporting. A position
+     * which could not be written is kept for the next flush, unless the courier reported a newer one meanwhile.
+     */
+    @Scheduled(fixedDelayString = "${couriers.location.flush-interval-millis:5000}")
+    public void flush() {
+        Map<Integer, Position> batch = new HashMap<>();
+        for (Integer courierId : unsaved.keySet()) {
+            Position position = unsaved.remove(courierId);
+            if (position != null) {
+                batch.put(courierId, position);
+            }
+        }
+        List<Integer> ids = new ArrayList<>(batch.keySet());
+        for (int from = 0; from < ids.size(); from += FLUSH_CHUNK) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + FLUSH_CHUNK, ids.size()));
+            try {
+                retry.execute(() -> {
+                    save(chunk, batch);
+                    return null;
+                });
+            } catch (Exception e) {
+                chunk.forEach(courierId -> unsaved.putIfAbsent(courierId, batch.get(courierId)));
+                System.out.println("Could not save the locations of " + chunk.size() + " couriers: " + e);
+            }
+        }
+        forgetStale();
+    }
+
+    /**
+     * The couriers are loaded in one query and, through the JDBC batch size, updated in a few statements
+     */
+    private void save(List<Integer> courierIds, Map<Integer, Position> batch) {
+        for (User user : userRepository.findAllById(courierIds)) {
+            if (user instanceof DeliveryUser) {
+                Position position = batch.get(user.getId());
+                DeliveryUser courier = (DeliveryUser) user;
+                courier.setLatitude(position.latitude);
+                courier.setLongitude(position.longitude);
+                courier.setLocatedAt(Instant.ofEpochMilli(position.reportedAt));
+            }
+        }
+    }
+
+    private void forgetStale() {
+        long oldest = System.currentTimeMillis() - maxAgeMillis;
+        positions.forEach((courierId, position) -> {
+            if (position.reportedAt < oldest && positions.remove(courierId, position)) {
+                leave(position.cell, courierId);
+            }
+        });
+    }
+
+    private int index(double degrees) {
+        return (int) Math.floor(degrees / cellDegrees);
+    }
+
+    private long cellOf(double latitude, double longitude) {
+        return key(index(latitude + 90), index(longitude + 180));
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+
+    /**
+     * Equirectangular approximation, precise to well under a percent at the distances of a city
+     */
+    private static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double x = Math.toRadians(longitude2 - longitude1) * Math.cos(Math.toRadians((latitude1 + latitude2) / 2));
+        double y = Math.toRadians(latitude2 - latitude1);
+        return Math.sqrt(x * x + y * y) * 6371;
+    }
+}
@@ -0,0 +1,49 @@
+package application.services.implementations;
+
+import application.repositories.UserRepository;
+import application.services.CourierService;
+import application.services.exceptions.EntityNotFoundException;
+import application.services.exceptions.InvalidDataException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Service
+public class CourierServiceImpl implements CourierService {
+
+    private CourierDispatcher dispatcher;
+
+    private CourierLocations locations;
+
+    private UserRepository userRepository;
+
+    @Autowired
+    public CourierServiceImpl(CourierDispatcher dispatcher, CourierLocations locations, UserRepository userRepository) {
+        this.dispatcher = dispatcher;
+        this.locations = locations;
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Checked against the couriers known to the dispatcher and kept in memory, so a location report reads and
+     * writes nothing in the database. A courier created since the dispatcher last counted the orders is looked up
+     * once, on its first report, and then dispatched to right away.
+     */
+    @Override
+    public void updateLocation(String courierIdString, String latitudeString, String longitudeString)
+            throws InvalidDataException, EntityNotFoundException {
+        int id;
+        if (!courierIdString.equals("") && courierIdString.matches("\\d+")) {
+            id = Integer.parseInt(courierIdString);
+        } else throw new InvalidDataException("The given id is invalid!");
+
+        double latitude = Coordinates.latitude(latitudeString);
+        double longitude = Coordinates.longitude(longitudeString);
+        if (!dispatcher.isCourier(id)) {
+            if (!userRepository.existsCourierById(id)) {
+                throw new EntityNotFoundException("Courier not found!");
+            }
+            dispatcher.register(id);
+        }
+        locations.update(id, latitude, longitude);
+    }
+}
@@ -0,0 +1,104 @@
+package application.services.implementations;
+
+import application.entities.Discount;
+import application.repositories.DiscountRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The discounts of each restaurant keyed by their minimum number of items, read from the database the first time
+ * they are needed and dropped when the restaurant's discounts change
+ */
+@Component
+public class DiscountTierCache {
+
+    private final DiscountRepository discountRepository;
+
+    private final Map<Integer, NavigableMap<Integer, Discount>> tiers = new ConcurrentHashMap<>();
+
+    /**
+     * Counts the invalidations, so a lookup can tell whether the tiers it loaded may have been read before a change
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Autowired
+    public DiscountTierCache(DiscountRepository discountRepository) {
+        this.discountRepository = discountRepository;
+    }
+
+    /**
+     * @return the discount with the highest minimum number of items not above nbItems, or null if there is none
+     */
+    public Discount findApplicable(int restaurantId, int nbItems) {
+        Map.Entry<Integer, Discount> tier = tiersOf(restaurantId).floorEntry(nbItems);
+        return tier == null ? null : tier.getValue();
+    }
+
+    /**
+     * Loads missing tiers without holding a lock of the map, so a slow query does not block the lookups of other
+     * restaurants. Tiers loaded while the restaurant was invalidated are used once but not kept.
+     */
+    private NavigableMap<Integer, Discount> tiersOf(int restaurantId) {
+        NavigableMap<Integer, Discount> cached = tiers.get(restaurantId);
+        if (cached != null) {
+            return cached;
+        }
+        long seen = invalidations.get();
+        NavigableMap<Integer, Discount> loaded = load(restaurantId);
+        cached = tiers.putIfAbsent(restaurantId, loaded);
+        if (cached != null) {
+            return cached;
+        }
+        if (invalidations.get() != seen) {
+            tiers.remove(restaurantId, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Drops the restaurant's tiers now and, inside a transaction, again after it completes, so a concurrent lookup
+     * cannot keep the tiers it read before the change was committed
+     */
+    public void invalidate(int restaurantId) {
+        drop(restaurantId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    drop(restaurantId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Counted before removing, so a lookup storing its tiers after the removal sees the count changed
+     */
+    private void drop(int restaurantId) {
+        invalidations.incrementAndGet();
+        tiers.remove(restaurantId);
+    }
+
+    /**
+     * Copies the discounts without their restaurant, so nothing attached to the loading session is shared between
+     * threads. Of two discounts with the same minimum, the last one read applies.
+     */
+    private NavigableMap<Integer, Discount> load(int restaurantId) {
+        NavigableMap<Integer, Discount> restaurantTiers = new TreeMap<>();
+        for (Discount d : discountRepository.findByDiscRestaurantId(restaurantId)) {
+            restaurantTiers.put(d.getMinItemNumber(), Discount.builder().id(d.getId())
+                    .minItemNumber(d.getMinItemNumber()).percentage(d.getPercentage())
+                    .build());
+        }
+        return Collections.unmodifiableNavigableMap(restaurantTiers);
+    }
+}
@@ -22,11 +22,15 @@ public class ItemServiceImpl implements ItemService {
 
     RestaurantRepository restaurantRepository;
 
+    ConcurrencyRetry retry;
+
     @Autowired
-    public ItemServiceImpl(ItemRepository itemRepository, RestaurantRepository restaurantRepository)
+    public ItemServiceImpl(ItemRepository itemRepository, RestaurantRepository restaurantRepository,
+                           ConcurrencyRetry retry)
     {
         this.itemRepository=itemRepository;
         this.restaurantRepository=restaurantRepository;
+        this.retry=retry;
     }
 
     @Override
@@ -66,6 +70,7 @@ public class ItemServiceImpl implements ItemService {
     }
 
     @Override
+    @Transactional
     public Item addItem(RestaurantDTO restaurantDto, String nameString, String stockString, String priceString)
             throws InvalidDataException {
         if(restaurantDto==null)
@@ -90,20 +95,30 @@ public class ItemServiceImpl implements ItemService {
         if(stock>0 && price>0)
         {
             Item item = Item.builder().name(nameString).price(price).stock(stock).build();
-            Restaurant restaurant = restaurantRepository.findById(restaurantDto.getId()).orElse(null);
+            Restaurant restaurant = restaurantRepository.findWithItemsById(restaurantDto.getId()).orElse(null);
             item.setRestaurant(restaurant);
             //item.setOrderedItems(new ArrayList<>());
             List<Item> newItems = restaurant.getItems();
             newItems.add(item);
             restaurant.setItems(newItems);
-            return itemRepository.save(item);
+            Item savedItem = itemRepository.save(item);
+            restaurantRepository.bumpMenuVersion(restaurant.getId());
+            return savedItem;
         }
         else throw new InvalidDataException("Invalid input data");
     }
 
+    /**
+     * Retried if an order took from the item's stock meanwhile
+     */
     @Override
     public Item updateItem(RestaurantDTO restaurantDto, String idString, String nameString, String stockString,
                            String priceString) throws InvalidDataException, EntityNotFoundException {
+        return retry.execute(() -> changeItem(restaurantDto, idString, nameString, stockString, priceString));
+    }
+
+    private Item changeItem(RestaurantDTO restaurantDto, String idString, String nameString, String stockString,
+                            String priceString) throws InvalidDataException, EntityNotFoundException {
         if(restaurantDto==null)
         {
             throw new InvalidDataException("Invalid restaurant");
@@ -136,7 +151,7 @@ public class ItemServiceImpl implements ItemService {
         float price = Float.parseFloat(priceString);
         if(stock>0 && price>0)
         {
-            Restaurant restaurant = restaurantRepository.findById(restaurantDto.getId()).orElse(null);
+            Restaurant restaurant = restaurantRepository.findWithItemsById(restaurantDto.getId()).orElse(null);
             List<Item> newItems = restaurant.getItems();
             newItems.remove(foundItem);
 
@@ -146,12 +161,15 @@ public class ItemServiceImpl implements ItemService {
 
             newItems.add(foundItem);
             restaurant.setItems(newItems);
-            return itemRepository.save(foundItem);
+            Item savedItem = itemRepository.save(foundItem);
+            restaurantRepository.bumpMenuVersion(restaurant.getId());
+            return savedItem;
         }
         else throw new InvalidDataException("Invalid input data");
     }
 
     @Override
+    @Transactional
     public void deleteItem(RestaurantDTO restaurantDTO, String idString) throws InvalidDataException, EntityNotFoundException {
 
         int id;
@@ -168,12 +186,13 @@ public class ItemServiceImpl implements ItemService {
             {
                 throw new EntityNotFoundException("Item not found!");
             }
-            Restaurant restaurant = restaurantRepository.findById(restaurantDTO.getId()).orElse(null);
+            Restaurant restaurant = restaurantRepository.findWithItemsById(restaurantDTO.getId()).orElse(null);
             List<Item> newItems = restaurant.getItems();
             newItems.remove(foundItem);
             restaurant.setItems(newItems);
 
             itemRepository.delete(foundItem);
+            restaurantRepository.bumpMenuVersion(restaurant.getId());
         }
         else throw new InvalidDataException("The given id is invalid!");
     }
@@ -0,0 +1,95 @@
+package application.services.implementations;
+
+import application.entities.Status;
+import application.repositories.OrderArchiveRepository;
+import application.repositories.OrderRepository;
+import application.repositories.OrderedItemRepository;
+import application.services.OrderArchiveService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Moves delivered orders older than the horizon, with their lines, from order_table to order_archive, so the table
+ * read by status updates and courier queries only holds recent and undelivered orders
+ */
+@Service
+public class OrderArchiveServiceImpl implements OrderArchiveService {
+
+    OrderRepository orderRepository;
+
+    OrderedItemRepository orderedItemRepository;
+
+    OrderArchiveRepository orderArchiveRepository;
+
+    TransactionTemplate transactions;
+
+    private final boolean enabled;
+    private final Duration horizon;
+    private final int batchSize;
+
+    @Autowired
+    public OrderArchiveServiceImpl(OrderRepository orderRepository, OrderedItemRepository orderedItemRepository,
+                                   OrderArchiveRepository orderArchiveRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${orders.archive.enabled:true}") boolean enabled,
+                                   @Value("${orders.archive.horizon-days:90}") int horizonDays,
+                                   @Value("${orders.archive.batch-size:500}") int batchSize)
+    {
+        this.orderRepository=orderRepository;
+        this.orderedItemRepository=orderedItemRepository;
+        this.orderArchiveRepository=orderArchiveRepository;
+        this.transactions=new TransactionTemplate(transactionManager);
+        this.enabled=enabled;
+        this.horizon=Duration.ofDays(horizonDays);
+        this.batchSize=batchSize;
+    }
+
+    /**
+     * Archives the orders in batches, each copied and deleted in its own short transaction, so rows of the hot
+     * table are never locked for the length of the whole run
+     *
+     * @return the number of orders archived
+     */
+    @Override
+    public int archiveOrdersBefore(Instant before) {
+        int archived = 0;
+        int moved;
+        do {
+            moved = transactions.execute(status -> archiveBatch(before));
+            archived += moved;
+        } while (moved == batchSize);
+        return archived;
+    }
+
+    private int archiveBatch(Instant before) {
+        List<Integer> ids = orderRepository.findIdsCreatedBefore(Status.DELIVERED, before,
+                PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        orderArchiveRepository.copyOrders(ids);
+        orderArchiveRepository.copyOrderedItems(ids);
+        orderedItemRepository.deleteByOrderIds(ids);
+        orderRepository.deleteByIds(ids);
+        return ids.size();
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${orders.archive.interval-millis:86400000}")
+    public void archiveOldOrders() {
+        if (!enabled) {
+            return;
+        }
+        int orders = archiveOrdersBefore(Instant.now().minus(horizon));
+        System.out.println("Archived " + orders + " orders older than " + horizon.toDays() + " days");
+    }
+}
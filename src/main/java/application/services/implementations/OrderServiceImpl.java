@@ -7,19 +7,25 @@ import application.services.exceptions.InvalidDataException;
 import application.services.OrderService;
 import application.entities.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.*;
 
 @Service
 public class OrderServiceImpl implements OrderService {
 
+    private static final int MAX_HISTORY_PAGE = 500;
+
+    private static final int MAX_STATUS_BATCH = 500;
+
     OrderRepository orderRepository;
 
     ItemRepository itemRepository;
@@ -28,105 +34,64 @@ public class OrderServiceImpl implements OrderService {
 
     OrderedItemRepository orderedItemRepository;
 
-    DiscountRepository discountRepository;
+    DiscountTierCache discountTiers;
+
+    CourierDispatcher dispatcher;
+
+    ConcurrencyRetry retry;
 
     @Autowired
     public OrderServiceImpl(OrderRepository orderRepository, ItemRepository itemRepository,
                             UserRepository userRepository, OrderedItemRepository orderedItemRepository,
-                            DiscountRepository discountRepository)
+                            DiscountTierCache discountTiers, CourierDispatcher dispatcher, ConcurrencyRetry retry)
     {
         this.orderRepository=orderRepository;
         this.itemRepository=itemRepository;
         this.userRepository=userRepository;
         this.orderedItemRepository=orderedItemRepository;
-        this.discountRepository=discountRepository;
+        this.discountTiers=discountTiers;
+        this.dispatcher=dispatcher;
+        this.retry=retry;
     }
 
     @Override
     public Discount findApplicableDiscount(RestaurantDTO restaurant, int nbItems)
     {
-        List<Discount> discounts = discountRepository.findByDiscRestaurantId(restaurant.getId());
-
-        List<Discount> sorted = discounts.stream().sorted((d1, d2)->{
-            int nb1 = d1.getMinItemNumber();
-            int nb2 = d2.getMinItemNumber();
-            if(nb1<nb2) {
-                return -1;
-            }else if(nb1==nb2){
-                return 0;
-            }
-            else return 1;
-        }).collect(Collectors.toList());
-
-        if(discounts.size()==0 || nbItems<sorted.get(0).getMinItemNumber())
-        {
-            return null;
-        }
-        else
-        {
-            Discount applicable=null;
-            for(Discount d : sorted)
-            {
-                if(d.getMinItemNumber()>nbItems)
-                {
-                    break;
-                }
-                applicable=d;
-            }
-            return applicable;
-        }
+        return discountTiers.findApplicable(restaurant.getId(), nbItems);
     }
 
     @Override
     public Integer findApplicableDiscount(int restaurantId, int nbItems)
     {
-        List<Discount> discounts = discountRepository.findByDiscRestaurantId(restaurantId);
-
-        List<Discount> sorted = discounts.stream().sorted((d1, d2)->{
-            int nb1 = d1.getMinItemNumber();
-            int nb2 = d2.getMinItemNumber();
-            if(nb1<nb2) {
-                return -1;
-            }else if(nb1==nb2){
-                return 0;
-            }
-            else return 1;
-        }).collect(Collectors.toList());
-
-        if(discounts.size()==0 || nbItems<sorted.get(0).getMinItemNumber())
-        {
-            return null;
-        }
-        else
-        {
-            Discount applicable=null;
-            for(Discount d : sorted)
-            {
-                if(d.getMinItemNumber()>nbItems)
-                {
-                    break;
-                }
-                applicable=d;
-            }
-            return applicable.getPercentage();
-        }
+        Discount applicable = discountTiers.findApplicable(restaurantId, nbItems);
+        return applicable == null ? null : applicable.getPercentage();
     }
 
-
+    /**
+     * Places the order in one transaction, retried if it collides with a concurrent update
+     */
     @Override
     public OrderDTO createNewOrder(UserDTO currentUser, RestaurantDTO selectedRestaurant, Map<String, String> itemsToOrder)
             throws EntityNotFoundException, InvalidDataException {
+        return retry.execute(() -> placeOrder(currentUser, selectedRestaurant, itemsToOrder));
+    }
+
+    /**
+     * Stock and wallet are checked by the conditional updates taking from them, so concurrent orders cannot oversell
+     * an item or overdraw a wallet. Failing either rolls the whole order back. The stock is reserved last, so the
+     * item rows stay locked only while the order is inserted and committed. The stock updates go in one JDBC batch
+     * and the order and its lines are inserted in batches at commit, so the number of round trips does not grow
+     * with the number of lines.
+     */
+    private OrderDTO placeOrder(UserDTO currentUser, RestaurantDTO selectedRestaurant, Map<String, String> itemsToOrder)
+            throws EntityNotFoundException, InvalidDataException {
 
         User user = userRepository.findById(currentUser.getId()).orElse(null);
-        List<User> deliveryUsers = userRepository.findAllByUserType(UserType.DELIVERY);
-        DeliveryUser courier = (DeliveryUser) deliveryUsers.get(deliveryUsers.size()-1);
 
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.YYYY hh:mm:ss");
-        Order newOrder = Order.builder().customer((RegularUser) user).datetime(formatter.format(LocalDateTime.now()))
-                .status(Status.CREATED).courier(courier).build();
+        Order newOrder = Order.builder().customer((RegularUser) user).createdAt(Instant.now())
+                .status(Status.CREATED).build();
 
-        float totalAmount = 0;
-        int nbItems = 0;
+        SortedMap<Integer, Integer> quantities = new TreeMap<>();
 
         for(Map.Entry<String,String> entry : itemsToOrder.entrySet())
         {
@@ -150,18 +115,34 @@ public class OrderServiceImpl implements OrderService {
             {
                 throw new EntityNotFoundException("Selected restaurant not found!");
             }
-            Item selectedItem = itemRepository.findById(id).orElse(null);
-            if(selectedItem == null || selectedItem.getRestaurant().getId()!=selectedRestaurant.getId())
-            {
-                throw new EntityNotFoundException("Selected item not found!");
-            }
+            quantities.merge(id, quantity, Integer::sum);
+        }
+
+        List<Item> selectedItems = quantities.isEmpty() ? new ArrayList<>()
+                : itemRepository.findForOrder(quantities.keySet(), selectedRestaurant.getId());
+        if(selectedItems.size()!=quantities.size())
+        {
+            throw new EntityNotFoundException("Selected item not found!");
+        }
+        if(!selectedItems.isEmpty())
+        {
+            newOrder.setRestaurant(selectedItems.get(0).getRestaurant());
+        }
+
+        float totalAmount = 0;
+        int nbItems = 0;
+        List<OrderedItem> orderedItems = new ArrayList<>();
+
+        for(Item selectedItem : selectedItems)
+        {
+            int quantity = quantities.get(selectedItem.getId());
             if(quantity>selectedItem.getStock())
             {
                 throw new InvalidDataException("Invalid quantity for item " + selectedItem.getName() + ". Not enough in stock.");
             }
-
             totalAmount+=quantity*selectedItem.getPrice();
             nbItems+=quantity;
+            orderedItems.add(OrderedItem.builder().item(selectedItem).quantity(quantity).orderObj(newOrder).build());
         }
 
         if(((RegularUser)user).getWallet()-totalAmount<0)
@@ -169,46 +150,47 @@ public class OrderServiceImpl implements OrderService {
             throw new InvalidDataException("Not enough money to order!");
         }
 
-        for(Map.Entry<String,String> entry : itemsToOrder.entrySet())
+        //apply discounts
+        Discount applicable = findApplicableDiscount(selectedRestaurant,nbItems);
+        if(applicable!=null)
         {
-            int id = Integer.parseInt(entry.getKey());
-            String quantityString = entry.getValue();
-
-            int quantity = Integer.parseInt(quantityString);
-
-            Item selectedItem = itemRepository.findById(id).orElse(null);
-
-            OrderedItem orderedItem = OrderedItem.builder().item(selectedItem).quantity(quantity).orderObj(newOrder).build();
-            List<OrderedItem> orderedItemList = selectedItem.getOrderedItems();
-            orderedItemList.add(orderedItem);
-            selectedItem.setOrderedItems(orderedItemList);
-            selectedItem.setStock(selectedItem.getStock()-quantity);
-
-           // currentUser.setWallet(((RegularUser)user).getWallet()-quantity*selectedItem.getPrice());
-            //((RegularUser)user).setWallet(((RegularUser)user).getWallet()-quantity*selectedItem.getPrice());
+            totalAmount = totalAmount - totalAmount*applicable.getPercentage()/100;
+        }
 
-            userRepository.save(user);
-            itemRepository.save(selectedItem);
-            orderRepository.save(newOrder);
-            orderedItemRepository.save(orderedItem);
+        if(userRepository.debitWallet(user.getId(), totalAmount)==0)
+        {
+            throw new InvalidDataException("Not enough money to order!");
         }
 
-        //apply discounts
-        Discount applicable = findApplicableDiscount(selectedRestaurant,nbItems);
-        if(applicable==null)
+        Restaurant pickup = newOrder.getRestaurant();
+        Integer courierId = pickup==null ? dispatcher.assign(null, null)
+                : dispatcher.assign(pickup.getLatitude(), pickup.getLongitude());
+        User courier = courierId==null ? null : userRepository.findById(courierId).orElse(null);
+        if(!(courier instanceof DeliveryUser))
         {
-            currentUser.setWallet(((RegularUser)user).getWallet()-totalAmount);
-            ((RegularUser)user).setWallet(((RegularUser)user).getWallet()-totalAmount);
+            throw new EntityNotFoundException("No courier available!");
         }
-        else {
-            totalAmount = totalAmount - totalAmount*applicable.getPercentage()/100;
-            currentUser.setWallet(((RegularUser)user).getWallet()-totalAmount);
-            ((RegularUser)user).setWallet(((RegularUser)user).getWallet()-totalAmount);
+        newOrder.setCourier((DeliveryUser) courier);
+
+        List<Integer> soldOut = quantities.isEmpty() ? new ArrayList<>() : itemRepository.reserveStock(quantities);
+        for(Item selectedItem : selectedItems)
+        {
+            if(soldOut.contains(selectedItem.getId()))
+            {
+                throw new InvalidDataException("Invalid quantity for item " + selectedItem.getName() + ". Not enough in stock.");
+            }
         }
 
-        userRepository.save(user);
+        orderRepository.save(newOrder);
+        dispatcher.placed(courierId, newOrder.getId());
+        orderedItemRepository.saveAll(orderedItems);
 
-        return new OrderDTO(newOrder);
+        // the loaded user is left unchanged, saving it would write back the wallet read before the debit
+        float wallet = ((RegularUser)user).getWallet()-totalAmount;
+        currentUser.setWallet(wallet);
+        OrderDTO orderDTO = new OrderDTO(newOrder);
+        orderDTO.getCustomer().setWallet(wallet);
+        return orderDTO;
     }
 
     @Override
@@ -223,7 +205,66 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
-    public void changeOrderStatus(String idString, String statusString) throws InvalidDataException, EntityNotFoundException {
+    public Slice<OrderDTO> getOrders(Pageable pageable) {
+        return orderRepository.findAllBy(pageable).map(OrderDTO::new);
+    }
+
+    /**
+     * The cursor is the id of the last order sent, encoded so that clients do not depend on its content
+     */
+    @Override
+    public OrderPageDTO getOrderHistory(OrderFilterDTO filter, String cursor, int limit) throws InvalidDataException {
+        if (limit <= 0 || limit > MAX_HISTORY_PAGE) {
+            throw new InvalidDataException("Invalid page size!");
+        }
+        if (filter == null) {
+            filter = new OrderFilterDTO();
+        }
+        int before = cursor == null || cursor.equals("") ? Integer.MAX_VALUE : decodeCursor(cursor);
+
+        List<Order> orders = orderRepository.findHistory(before, filter.getStatus(), filter.getCourierId(),
+                filter.getCustomerId(), filter.getRestaurantId(), parseInstant(filter.getFrom()),
+                parseInstant(filter.getTo()), PageRequest.of(0, limit + 1));
+
+        List<OrderDTO> orderDTOS = new ArrayList<>();
+        for (int i = 0; i < orders.size() && i < limit; i++) {
+            orderDTOS.add(new OrderDTO(orders.get(i)));
+        }
+        String next = orders.size() > limit ? encodeCursor(orders.get(limit - 1).getId()) : null;
+        return new OrderPageDTO(orderDTOS, next);
+    }
+
+    private static String encodeCursor(int id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int decodeCursor(String cursor) throws InvalidDataException {
+        try {
+            return Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidDataException("Invalid cursor!");
+        }
+    }
+
+    private static Instant parseInstant(String instant) throws InvalidDataException {
+        if (instant == null || instant.equals("")) {
+            return null;
+        }
+        try {
+            return Instant.parse(instant);
+        } catch (DateTimeParseException e) {
+            throw new InvalidDataException("Invalid time " + instant + "!");
+        }
+    }
+
+    @Override
+    public boolean isOrderOf(int orderId, int userId) {
+        return orderRepository.countByIdAndUser(orderId, userId) > 0;
+    }
+
+    @Override
+    public OrderStatusChangeDTO changeOrderStatus(String idString, String statusString)
+            throws InvalidDataException, EntityNotFoundException {
         int id;
         if(!idString.equals("") && idString.matches("-?\\d+(\\.\\d+)?"))
         {
@@ -231,30 +272,100 @@ public class OrderServiceImpl implements OrderService {
         }
         else throw new InvalidDataException("The given id is invalid!");
 
-        if(id>0)
+        if(id<=0)
         {
-            Order foundOrder = orderRepository.findById(id).orElse(null);
-            if(foundOrder==null)
-            {
-                throw new EntityNotFoundException("Order not found!");
-            }
+            throw new InvalidDataException("The given id is invalid!");
+        }
+        OrderStatusChangeDTO change = changeOrderStatuses(Collections.singletonList(id), statusString).get(0);
+        if(change.getError()!=null && change.getStatus()==null)
+        {
+            throw new EntityNotFoundException(change.getError());
+        }
+        if(change.getError()!=null)
+        {
+            throw new InvalidDataException(change.getError());
+        }
+        return change;
+    }
 
-            if(statusString.equals("CREATED"))
+    @Override
+    public List<OrderStatusChangeDTO> changeOrderStatuses(List<Integer> ids, String statusString)
+            throws InvalidDataException, EntityNotFoundException {
+        if(ids==null || ids.isEmpty() || ids.size()>MAX_STATUS_BATCH)
+        {
+            throw new InvalidDataException("Invalid number of orders!");
+        }
+        Status status;
+        try {
+            status = Status.valueOf(statusString);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new InvalidDataException("Invalid status!");
+        }
+        return retry.execute(() -> moveOrders(new LinkedHashSet<>(ids), status));
+    }
+
+    /**
+     * The orders are locked and checked against the transitions of their status, then all those which can move are
+     * moved by one update, so marking many orders costs the same two statements as marking one. As before the
+     * transition table, an order in progress may be set in progress again without an error; any other order already
+     * in the status gets the error of its transition. The update must move every order that was checked, else the
+     * rows changed despite the locks and the whole change is rolled back and retried.
+     */
+    private List<OrderStatusChangeDTO> moveOrders(Set<Integer> ids, Status status) {
+        Map<Integer, OrderStatusChangeDTO> changes = new LinkedHashMap<>();
+        for(Integer id : ids)
+        {
+            changes.put(id, OrderStatusChangeDTO.builder().orderId(id).error("Order not found!").build());
+        }
+
+        List<Integer> moving = new ArrayList<>();
+        Map<Integer, Integer> deliveredBy = new LinkedHashMap<>();
+        for(Object[] row : orderRepository.lockStatuses(ids))
+        {
+            OrderStatusChangeDTO change = changes.get(((Number) row[0]).intValue());
+            Status current = Status.values()[((Number) row[1]).intValue()];
+            change.setCustomerId(row[2]==null ? null : ((Number) row[2]).intValue());
+            change.setStatus(current);
+            change.setError(null);
+            if(current==status && status==Status.IN_PROGRESS)
             {
-                throw new InvalidDataException("Invalid status. The order was already created!");
+                continue;
             }
-            else if(foundOrder.getStatus()==Status.DELIVERED && statusString.equals("IN_PROGRESS"))
+            if(!current.canMoveTo(status))
             {
-                throw new InvalidDataException("Invalid status. The order cannot be in progress, it was already delivered!");
+                change.setError(transitionError(status));
+                continue;
             }
-            else if(foundOrder.getStatus()!=Status.IN_PROGRESS && statusString.equals("DELIVERED"))
+            change.setStatus(status);
+            change.setChanged(true);
+            moving.add(change.getOrderId());
+            if(status==Status.DELIVERED && row[3]!=null)
             {
-                throw new InvalidDataException("Invalid status. The order must be in progress first, then to be delivered!");
+                deliveredBy.put(change.getOrderId(), ((Number) row[3]).intValue());
             }
+        }
 
-            foundOrder.setStatus(Status.valueOf(statusString));
-            orderRepository.save(foundOrder);
+        if(!moving.isEmpty() && orderRepository.updateStatus(moving, Status.before(status), status)!=moving.size())
+        {
+            throw new ConcurrencyFailureException("Orders changed status while they were locked!");
         }
-        else throw new InvalidDataException("The given id is invalid!");
+        for(Map.Entry<Integer, Integer> delivery : deliveredBy.entrySet())
+        {
+            dispatcher.delivered(delivery.getValue(), delivery.getKey());
+        }
+        return new ArrayList<>(changes.values());
+    }
+
+    private static String transitionError(Status next)
+    {
+        if(next==Status.CREATED)
+        {
+            return "Invalid status. The order was already created!";
+        }
+        if(next==Status.DELIVERED)
+        {
+            return "Invalid status. The order must be in progress first, then to be delivered!";
+        }
+        return "Invalid status. The order cannot be in progress, it was already delivered!";
     }
 }
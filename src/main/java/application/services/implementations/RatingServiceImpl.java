@@ -13,7 +13,11 @@ import application.services.RatingService;
 import application.services.exceptions.EntityNotFoundException;
 import application.services.exceptions.InvalidDataException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -36,6 +40,7 @@ public class RatingServiceImpl implements RatingService {
     }
 
     @Override
+    @Transactional
     public void deleteRating(String idString, UserDTO user) throws InvalidDataException, EntityNotFoundException {
         int id;
         Rating foundRating;
@@ -44,13 +49,14 @@ public class RatingServiceImpl implements RatingService {
         } else throw new InvalidDataException("The given id is invalid!");
 
         if (id > 0) {
-            foundRating = ratingRepository.findById(id).orElse(null);
+            foundRating = ratingRepository.lockById(id).orElse(null);
             if (foundRating == null || foundRating.getUser().getId()!=user.getId()) {
                 throw new EntityNotFoundException("Rating not found for user "+user.getUsername()+".");
             }
         } else throw new InvalidDataException("The given id is invalid!");
 
         ratingRepository.delete(foundRating);
+        restaurantRepository.addToRatings(foundRating.getRatedRestaurant().getId(), -foundRating.getRate(), -1);
     }
 
     @Override
@@ -60,19 +66,27 @@ public class RatingServiceImpl implements RatingService {
             id = Integer.parseInt(idString);
         } else throw new InvalidDataException("The given id is invalid!");
 
-        List<Rating> ratings = ratingRepository.findAll();
+        List<Rating> ratings = ratingRepository.findByUserId(id);
         List<RatingDTO> ratingDTOS = new ArrayList<>();
         for(Rating r:ratings)
         {
-            if(r.getUser().getId()==id)
-            {
-                ratingDTOS.add(new RatingDTO(r));
-            }
+            ratingDTOS.add(new RatingDTO(r));
         }
         return ratingDTOS;
     }
 
     @Override
+    public Slice<RatingDTO> getRatings(String idString, Pageable pageable) throws InvalidDataException {
+        int id;
+        if (idString != null && !idString.equals("") && idString.matches("-?\\d+(\\.\\d+)?")) {
+            id = Integer.parseInt(idString);
+        } else throw new InvalidDataException("The given id is invalid!");
+
+        return ratingRepository.findByUserId(id, pageable).map(RatingDTO::new);
+    }
+
+    @Override
+    @Transactional
     public UserDTO addRating(String restaurantId, String rateString, String userId) throws InvalidDataException {
         int rate = Integer.parseInt(rateString);
         int restId = Integer.parseInt(restaurantId);
@@ -81,7 +95,7 @@ public class RatingServiceImpl implements RatingService {
         Restaurant foundRestaurant;
         foundRestaurant = restaurantRepository.findById(restId).orElse(null);
 
-        User foundUser = userRepository.findById(id).orElse(null);
+        User foundUser = userRepository.findWithRatingsById(id).orElse(null);
 
         List<Rating> userRatings = ((RegularUser) foundUser).getRatings();
 
@@ -94,6 +108,7 @@ public class RatingServiceImpl implements RatingService {
         Rating newRating = Rating.builder().rate(rate).ratedRestaurant(foundRestaurant).user((RegularUser) foundUser).build();
         userRatings.add(newRating);
         ratingRepository.save(newRating);
+        restaurantRepository.addToRatings(foundRestaurant.getId(), rate, 1);
 
         ((RegularUser) foundUser).setRatings(userRatings);
 
@@ -103,6 +118,7 @@ public class RatingServiceImpl implements RatingService {
     }
 
     @Override
+    @Transactional
     public void updateRating(String idString, String rateString, UserDTO user) throws InvalidDataException, EntityNotFoundException {
         int rate = Integer.parseInt(rateString);
 
@@ -113,13 +129,26 @@ public class RatingServiceImpl implements RatingService {
         } else throw new InvalidDataException("The given id is invalid!");
 
         if (id > 0) {
-            foundRating = ratingRepository.findById(id).orElse(null);
+            foundRating = ratingRepository.lockById(id).orElse(null);
             if (foundRating == null || foundRating.getUser().getId()!=user.getId()) {
                 throw new EntityNotFoundException("Rating not found for user "+user.getUsername()+".");
             }
         } else throw new InvalidDataException("The given id is invalid!");
 
+        restaurantRepository.addToRatings(foundRating.getRatedRestaurant().getId(), rate - foundRating.getRate(), 0);
         foundRating.setRate(rate);
         ratingRepository.save(foundRating);
     }
+
+    /**
+     * Recomputes the rating aggregates of all restaurants, correcting any drift from concurrent rating changes.
+     * Runs at startup, which also fills them in for databases created before they existed, then periodically.
+     */
+    @Override
+    @Transactional
+    @Scheduled(fixedDelayString = "${ratings.reconcile-interval-millis:3600000}")
+    public void reconcileRestaurantRatings() {
+        int restaurants = restaurantRepository.recomputeRatings();
+        System.out.println("Recomputed the ratings of " + restaurants + " restaurants");
+    }
 }
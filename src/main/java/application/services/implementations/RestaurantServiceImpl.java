@@ -1,22 +1,32 @@
 package application.services.implementations;
 
 import application.dto.DiscountDTO;
+import application.dto.MenuDTO;
 import application.entities.Discount;
 import application.repositories.DiscountRepository;
 import application.services.exceptions.EntityNotFoundException;
 import application.services.exceptions.InvalidDataException;
 import application.services.RestaurantService;
 import application.dto.ItemDTO;
+import application.dto.ItemSummary;
 import application.dto.RestaurantDTO;
+import application.dto.RestaurantSummary;
 import application.entities.Item;
 import application.entities.Restaurant;
 import application.repositories.RestaurantRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 public class RestaurantServiceImpl implements RestaurantService {
@@ -25,10 +35,14 @@ public class RestaurantServiceImpl implements RestaurantService {
 
     private DiscountRepository discountRepository;
 
+    private DiscountTierCache discountTiers;
+
     @Autowired
-    public RestaurantServiceImpl(RestaurantRepository restaurantRepository, DiscountRepository discountRepository) {
+    public RestaurantServiceImpl(RestaurantRepository restaurantRepository, DiscountRepository discountRepository,
+                                 DiscountTierCache discountTiers) {
         this.restaurantRepository = restaurantRepository;
         this.discountRepository = discountRepository;
+        this.discountTiers = discountTiers;
     }
 
     @Override
@@ -36,12 +50,32 @@ public class RestaurantServiceImpl implements RestaurantService {
         return restaurantRepository.findById(id).orElse(null);
     }
 
+    /**
+     * Built from two projection queries, whatever the number of restaurants, ratings and orders
+     */
     @Override
     public List<RestaurantDTO> getAllRestaurants() {
-        List<Restaurant> restaurants = restaurantRepository.findAll();
-        List<RestaurantDTO> restaurantDTOS = new ArrayList<>();
-        for (Restaurant r : restaurants) {
-            restaurantDTOS.add(new RestaurantDTO(r));
+        return withItems(restaurantRepository.findSummaries(Sort.by("id")));
+    }
+
+    @Override
+    public Slice<RestaurantDTO> getRestaurants(Pageable pageable) {
+        Slice<RestaurantSummary> summaries = restaurantRepository.findSummaries(pageable);
+        return new SliceImpl<>(withItems(summaries.getContent()), pageable, summaries.hasNext());
+    }
+
+    private List<RestaurantDTO> withItems(List<RestaurantSummary> summaries) {
+        Map<Integer, List<ItemDTO>> itemsByRestaurant = new HashMap<>();
+        if (!summaries.isEmpty()) {
+            List<Integer> restaurantIds = summaries.stream().map(RestaurantSummary::getId).collect(Collectors.toList());
+            for (ItemSummary item : restaurantRepository.findItemSummaries(restaurantIds)) {
+                itemsByRestaurant.computeIfAbsent(item.getRestaurantId(), id -> new ArrayList<>()).add(new ItemDTO(item));
+            }
+        }
+        List<RestaurantDTO> restaurantDTOS = new ArrayList<>(summaries.size());
+        for (RestaurantSummary summary : summaries) {
+            restaurantDTOS.add(new RestaurantDTO(summary,
+                    itemsByRestaurant.getOrDefault(summary.getId(), new ArrayList<>())));
         }
         return restaurantDTOS;
     }
@@ -57,6 +91,7 @@ public class RestaurantServiceImpl implements RestaurantService {
     }
 
     @Override
+    @Transactional
     public Restaurant updateRestaurant(String idString, String name) throws InvalidDataException, EntityNotFoundException {
         int id;
         if (!idString.equals("") && idString.matches("-?\\d+(\\.\\d+)?")) {
@@ -73,8 +108,30 @@ public class RestaurantServiceImpl implements RestaurantService {
                 throw new EntityNotFoundException("Restaurant not found!");
             }
             foundRestaurant.setName(name);
-            return restaurantRepository.save(foundRestaurant);
+            Restaurant savedRestaurant = restaurantRepository.save(foundRestaurant);
+            restaurantRepository.bumpMenuVersion(id);
+            return savedRestaurant;
+        } else throw new InvalidDataException("The given id is invalid!");
+    }
+
+    @Override
+    @Transactional
+    public void updateRestaurantLocation(String idString, String latitudeString, String longitudeString)
+            throws InvalidDataException, EntityNotFoundException {
+        int id;
+        if (!idString.equals("") && idString.matches("\\d+")) {
+            id = Integer.parseInt(idString);
         } else throw new InvalidDataException("The given id is invalid!");
+
+        double latitude = Coordinates.latitude(latitudeString);
+        double longitude = Coordinates.longitude(longitudeString);
+        Restaurant foundRestaurant = restaurantRepository.findById(id).orElse(null);
+        if (foundRestaurant == null) {
+            throw new EntityNotFoundException("Restaurant not found!");
+        }
+        foundRestaurant.setLatitude(latitude);
+        foundRestaurant.setLongitude(longitude);
+        restaurantRepository.save(foundRestaurant);
     }
 
     @Override
@@ -91,10 +148,15 @@ public class RestaurantServiceImpl implements RestaurantService {
                 throw new EntityNotFoundException("Restaurant not found!");
             }
             restaurantRepository.delete(foundRestaurant);
+            discountTiers.invalidate(id);
         } else throw new InvalidDataException("The given id is invalid!");
     }
 
+    /**
+     * The restaurant and its item list come from the second-level cache once they were read
+     */
     @Override
+    @Transactional(readOnly = true)
     public List<ItemDTO> getRestaurantItems(String idString) throws InvalidDataException, EntityNotFoundException {
         int id;
         if (idString != null && !idString.equals("") && idString.matches("-?\\d+(\\.\\d+)?")) {
@@ -115,7 +177,11 @@ public class RestaurantServiceImpl implements RestaurantService {
         } else throw new InvalidDataException("The given id is invalid!");
     }
 
+    /**
+     * Read by id rather than with a fetch join, which would always go to the database
+     */
     @Override
+    @Transactional(readOnly = true)
     public RestaurantDTO findSelectedRestaurant(String idString) throws InvalidDataException, EntityNotFoundException {
         int id;
         if (!idString.equals("") && idString.matches("-?\\d+(\\.\\d+)?")) {
@@ -138,17 +204,16 @@ public class RestaurantServiceImpl implements RestaurantService {
             id = Integer.parseInt(idString);
         } else throw new InvalidDataException("The given id is invalid!");
 
-        List<Discount> discounts = discountRepository.findAll();
+        List<Discount> discounts = discountRepository.findByDiscRestaurantId(id);
         List<DiscountDTO> discountDTOS = new ArrayList<>();
         for (Discount d : discounts) {
-            if (d.getDiscRestaurant().getId() == id) {
-                discountDTOS.add(new DiscountDTO(d));
-            }
+            discountDTOS.add(new DiscountDTO(d));
         }
         return discountDTOS;
     }
 
     @Override
+    @Transactional
     public void addDiscount(String idString, String minimumNbItems, String discountPercentage) throws InvalidDataException, EntityNotFoundException {
         int id, minItems, percentage;
         if (!idString.equals("") && idString.matches("-?\\d+(\\.\\d+)?")) {
@@ -164,7 +229,7 @@ public class RestaurantServiceImpl implements RestaurantService {
         } else throw new InvalidDataException("The given discount percentage is invalid!");
 
         if (id > 0 && minItems > 0 && percentage > 0) {
-            Restaurant foundRestaurant = restaurantRepository.findById(id).orElse(null);
+            Restaurant foundRestaurant = restaurantRepository.findWithDiscountsById(id).orElse(null);
             if (foundRestaurant == null) {
                 throw new EntityNotFoundException("Restaurant not found!");
             }
@@ -180,10 +245,13 @@ public class RestaurantServiceImpl implements RestaurantService {
             discounts.add(newDiscount);
             foundRestaurant.setDiscounts(discounts);
             discountRepository.save(newDiscount);
+            restaurantRepository.bumpMenuVersion(id);
+            discountTiers.invalidate(id);
         } else throw new InvalidDataException("The given input is invalid!");
     }
 
     @Override
+    @Transactional
     public void deleteDiscount(String restaurantId, String discountId) throws InvalidDataException, EntityNotFoundException {
 
         int id;
@@ -200,5 +268,55 @@ public class RestaurantServiceImpl implements RestaurantService {
         } else throw new InvalidDataException("The given id is invalid!");
 
         discountRepository.delete(foundDiscount);
+        restaurantRepository.bumpMenuVersion(foundDiscount.getDiscRestaurant().getId());
+        discountTiers.invalidate(foundDiscount.getDiscRestaurant().getId());
+    }
+
+    /**
+     * Read from the second-level cache while the restaurant is cached, else with one query by id. Menu and rating
+     * changes only drop the entry of their own restaurant, the periodic rating reconciliation drops all of them.
+     */
+    @Override
+    public long getMenuVersion(String idString) throws InvalidDataException, EntityNotFoundException {
+        int id;
+        if (idString != null && !idString.equals("") && idString.matches("-?\\d+(\\.\\d+)?")) {
+            id = Integer.parseInt(idString);
+        } else throw new InvalidDataException("The given id is invalid!");
+
+        Restaurant foundRestaurant = restaurantRepository.findById(id).orElse(null);
+        if (foundRestaurant == null) {
+            throw new EntityNotFoundException("Restaurant not found!");
+        }
+        return foundRestaurant.getMenuVersion();
+    }
+
+    /**
+     * The version, items and discounts are read in one transaction, so the menu is the one of its version. Stock,
+     * rating and location are cleared, as they change without a new version.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public MenuDTO getMenu(String idString) throws InvalidDataException, EntityNotFoundException {
+        int id;
+        if (idString != null && !idString.equals("") && idString.matches("-?\\d+(\\.\\d+)?")) {
+            id = Integer.parseInt(idString);
+        } else throw new InvalidDataException("The given id is invalid!");
+
+        Restaurant foundRestaurant = restaurantRepository.findById(id).orElse(null);
+        if (foundRestaurant == null) {
+            throw new EntityNotFoundException("Restaurant not found!");
+        }
+        List<DiscountDTO> discountDTOS = new ArrayList<>();
+        for (Discount d : foundRestaurant.getDiscounts()) {
+            discountDTOS.add(new DiscountDTO(d));
+        }
+        RestaurantDTO restaurantDTO = new RestaurantDTO(foundRestaurant);
+        restaurantDTO.setRating(null);
+        restaurantDTO.setLatitude(null);
+        restaurantDTO.setLongitude(null);
+        for (ItemDTO itemDTO : restaurantDTO.getItems()) {
+            itemDTO.setStock(null);
+        }
+        return new MenuDTO(foundRestaurant.getMenuVersion(), restaurantDTO, discountDTOS);
     }
 }
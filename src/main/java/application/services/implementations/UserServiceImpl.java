@@ -12,13 +12,15 @@ import application.services.exceptions.UserNotFoundException;
 import application.services.UserService;
 import application.dto.UserDTO;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import application.repositories.UserRepository;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class UserServiceImpl implements UserService {
@@ -31,14 +33,17 @@ public class UserServiceImpl implements UserService {
 
     private RatingRepository ratingRepository;
 
+    private ConcurrencyRetry retry;
+
     @Autowired
     public UserServiceImpl(UserRepository userRepository, RestaurantRepository restaurantRepository,
                            UserFavouriteRestaurantRepository userFavouriteRestaurantRepository,
-                           RatingRepository ratingRepository) {
+                           RatingRepository ratingRepository, ConcurrencyRetry retry) {
         this.userRepository = userRepository;
         this.restaurantRepository = restaurantRepository;
         this.userFavouriteRestaurantRepository = userFavouriteRestaurantRepository;
         this.ratingRepository = ratingRepository;
+        this.retry = retry;
     }
 
     @Override
@@ -58,8 +63,7 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public List<UserDTO> getAllRegularUsers() {
-        List<User> users = userRepository.findAll().stream().filter(user -> user.getUserType() == UserType.REGULAR)
-                .map(user -> (RegularUser) user).collect(Collectors.toList());
+        List<User> users = userRepository.findAllByUserType(UserType.REGULAR);
         List<UserDTO> userDTOS = new ArrayList<>();
         for (User user : users) {
             userDTOS.add(new UserDTO(user));
@@ -67,6 +71,11 @@ public class UserServiceImpl implements UserService {
         return userDTOS;
     }
 
+    @Override
+    public Slice<UserDTO> getRegularUsers(Pageable pageable) {
+        return userRepository.findAllByUserType(UserType.REGULAR, pageable).map(UserDTO::new);
+    }
+
     @Override
     public UserDTO loginUser(String username, String password) throws UserNotFoundException, IncorrectPasswordException {
 
@@ -142,15 +151,18 @@ public class UserServiceImpl implements UserService {
         if (id <= 0 || newAmount < 0) {
             throw new InvalidDataException("Invalid input data!");
         }
-        User foundUser = userRepository.findById(id).orElse(null);
-        if (foundUser == null || foundUser.getUserType() != UserType.REGULAR) {
-            throw new EntityNotFoundException("Regular user not found!");
-        }
-        ((RegularUser) foundUser).setWallet(newAmount);
-        userRepository.save(foundUser);
+        retry.execute(() -> {
+            User foundUser = userRepository.findById(id).orElse(null);
+            if (foundUser == null || foundUser.getUserType() != UserType.REGULAR) {
+                throw new EntityNotFoundException("Regular user not found!");
+            }
+            ((RegularUser) foundUser).setWallet(newAmount);
+            return userRepository.save(foundUser);
+        });
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<RestaurantDTO> getFavouriteRestaurants(String idString) throws InvalidDataException {
         if (idString.equals("") || !idString.matches("-?\\d+(\\\\d+)?")) {
             throw new InvalidDataException("Invalid input data!");
@@ -159,7 +171,7 @@ public class UserServiceImpl implements UserService {
         if (id <= 0) {
             throw new InvalidDataException("Invalid input data!");
         }
-        User foundUser = userRepository.findById(id).orElse(null);
+        User foundUser = userRepository.findWithFavouritesById(id).orElse(null);
         List<UserFavouriteRestaurant> favouriteRestaurants = ((RegularUser) foundUser).getFavourites();
 
         List<RestaurantDTO> restaurantDTOS = new ArrayList<>();
@@ -172,6 +184,7 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @Transactional
     public UserDTO addFavouriteRestaurant(String restaurantId, String userId) throws InvalidDataException, EntityNotFoundException {
         Restaurant foundRestaurant;
         int restId;
@@ -187,7 +200,7 @@ public class UserServiceImpl implements UserService {
         } else throw new InvalidDataException("The given id is invalid!");
 
         int id = Integer.parseInt(userId);
-        User foundUser = userRepository.findById(id).orElse(null);
+        User foundUser = userRepository.findWithFavouritesById(id).orElse(null);
         List<UserFavouriteRestaurant> favouriteRestaurants = ((RegularUser) foundUser).getFavourites();
 
         List<Restaurant> restaurants = new ArrayList<>();
@@ -213,6 +226,7 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @Transactional
     public UserDTO deleteFavouriteRestaurant(String restaurantId, String userId) throws InvalidDataException, EntityNotFoundException {
         Restaurant foundRestaurant;
         int restId;
@@ -228,7 +242,7 @@ public class UserServiceImpl implements UserService {
         } else throw new InvalidDataException("The given id is invalid!");
 
         int id = Integer.parseInt(userId);
-        User foundUser = userRepository.findById(id).orElse(null);
+        User foundUser = userRepository.findWithFavouritesById(id).orElse(null);
         List<UserFavouriteRestaurant> favouriteRestaurants = ((RegularUser) foundUser).getFavourites();
 
         List<UserFavouriteRestaurant> restaurants = new ArrayList<>();
@@ -253,6 +267,7 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @Transactional
     public UserDTO rateRestaurant(String restaurantId, String rateId, String userId) throws InvalidDataException, EntityNotFoundException {
 
         int rate = Integer.parseInt(rateId);
@@ -267,24 +282,25 @@ public class UserServiceImpl implements UserService {
             }
         } else throw new InvalidDataException("The given id is invalid!");
 
-        User foundUser = userRepository.findById(id).orElse(null);
+        // locked before the user's ratings are loaded, so the rate the change is computed from is the committed one
+        Rating existing = ratingRepository.lockByUserAndRestaurant(id, restId).orElse(null);
+
+        User foundUser = userRepository.findWithRatingsById(id).orElse(null);
 
         List<Rating> userRatings = ((RegularUser) foundUser).getRatings();
 
-        boolean ok =true;
-        for (Rating rating : userRatings) {
-            if (rating.getRatedRestaurant().getId() == foundRestaurant.getId()) {
-               ok=false;
-               rating.setRate(rate);
-               ratingRepository.save(rating);
-            }
+        if(existing!=null)
+        {
+            restaurantRepository.addToRatings(foundRestaurant.getId(), rate - existing.getRate(), 0);
+            existing.setRate(rate);
+            ratingRepository.save(existing);
         }
-
-        if(ok==true)
+        else
         {
             Rating newRating = Rating.builder().rate(rate).ratedRestaurant(foundRestaurant).user((RegularUser) foundUser).build();
             userRatings.add(newRating);
             ratingRepository.save(newRating);
+            restaurantRepository.addToRatings(foundRestaurant.getId(), rate, 1);
         }
 
         ((RegularUser) foundUser).setRatings(userRatings);
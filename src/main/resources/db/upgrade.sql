@@ -0,0 +1,39 @@
+-- Upgrades a database created by an earlier version of the server. Run it once, as a whole and in this order, with
+-- the server stopped and before starting the new version for the first time:
+--     mysql FoodDelivery < upgrade.sql
+-- Each step adds the columns and tables it fills itself. The schema update at startup then only adds what no step
+-- needs data for, such as foreign keys and the archive tables; were it to run first, it would create the columns
+-- and sequence tables below empty, and the steps would fail on them.
+
+-- 1. Orders and ordered items take their ids from pooled sequences instead of auto-increment columns. MySQL has no
+-- sequences, so Hibernate keeps each one in a single-row table holding the top of the next block of 50 ids. New ids
+-- must start above the used ones.
+create table order_seq (next_val bigint) engine=InnoDB;
+insert into order_seq select coalesce(max(id), 0) + 51 from order_table;
+
+create table ordered_item_seq (next_val bigint) engine=InnoDB;
+insert into ordered_item_seq select coalesce(max(id), 0) + 51 from ordered_item;
+
+-- 2. Orders keep the restaurant of their items, so that filtering the order history by restaurant finds the orders
+-- placed before.
+alter table order_table add column restaurant_id integer;
+
+update order_table o
+set restaurant_id = (select i.restaurant_id from ordered_item oi join item i on i.id = oi.item_id
+                     where oi.order_id = o.id limit 1)
+where o.restaurant_id is null;
+
+-- 3. Orders keep their creation time in the indexed created_at timestamp instead of the datetime text.
+-- The text was written in the server's time zone with the pattern dd.MM.YYYY hh:mm:ss. Its hour is on a 12-hour
+-- clock with no AM/PM marker, so afternoon orders come out twelve hours early, and YYYY is the week-based year, so
+-- orders of the last days of December may carry the next year. Neither can be told apart from the text alone.
+-- If the server did not run in UTC, wrap the parsed value in convert_tz(..., '<server zone>', '+00:00').
+alter table order_table add column created_at datetime;
+
+update order_table
+set created_at = str_to_date(datetime, '%d.%m.%Y %h:%i:%s')
+where created_at is null and datetime is not null;
+
+create index order_created_idx on order_table (created_at);
+
+alter table order_table drop column datetime;
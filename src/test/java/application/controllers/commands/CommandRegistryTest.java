@@ -0,0 +1,172 @@
+package application.controllers.commands;
+
+import application.controllers.notification.Message;
+import application.dto.MenuDTO;
+import application.dto.OrderStatusChangeDTO;
+import application.dto.RestaurantDTO;
+import application.dto.UserDTO;
+import application.entities.Status;
+import application.entities.UserType;
+import application.services.OrderService;
+import application.services.RestaurantService;
+import application.services.exceptions.InvalidDataException;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandRegistryTest {
+
+    private RestaurantService restaurantService;
+
+    private OrderService orderService;
+
+    private CommandRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        restaurantService = Mockito.mock(RestaurantService.class);
+        List<CommandModule> modules = new ArrayList<>();
+        orderService = Mockito.mock(OrderService.class);
+        modules.add(new RestaurantCommands(restaurantService));
+        modules.add(new OrderCommands(orderService));
+        modules.add(new ServerCommands(orderService));
+        registry = new CommandRegistry(modules);
+    }
+
+    @Test
+    void lookupAndExecute() throws Exception {
+        RestaurantDTO restaurant = RestaurantDTO.builder().id(1).name("Sushi Restaurant").items(new ArrayList<>()).build();
+        Mockito.when(restaurantService.findSelectedRestaurant("1")).thenReturn(restaurant);
+
+        Message message = registry.lookup("getSelRestaurant")
+                .execute(null, new CommandArgs(Collections.singletonList("1"))).toMessage();
+
+        Assert.assertEquals(RestaurantDTO.class.getName(), message.getHeader());
+        Assert.assertEquals(1, message.getObjectsJson().size());
+        RestaurantDTO received = registry.getMapper().readValue(message.getObjectsJson().get(0), RestaurantDTO.class);
+        Assert.assertEquals(restaurant.getName(), received.getName());
+    }
+
+    @Test
+    void conditionalMenu() throws Exception {
+        RestaurantDTO restaurant = RestaurantDTO.builder().id(1).name("Sushi Restaurant").items(new ArrayList<>()).build();
+        Mockito.when(restaurantService.getMenuVersion("1")).thenReturn(3L);
+        Mockito.when(restaurantService.getMenu("1")).thenReturn(new MenuDTO(3, restaurant, new ArrayList<>()));
+        RegisteredCommand command = registry.lookup("getMenu");
+
+        Message first = command.execute(null, new CommandArgs(Collections.singletonList("1"))).toMessage();
+        Message second = command.execute(null, new CommandArgs(Collections.singletonList("1"))).toMessage();
+        Message notModified = command.execute(null, new CommandArgs(Arrays.asList("1", "3"))).toMessage();
+
+        Assert.assertEquals("MenuDTO", first.getHeader());
+        Assert.assertEquals(3, registry.getMapper().readValue(first.getObjectsJson().get(0), MenuDTO.class).getVersion());
+        Assert.assertSame(first.getObjectsJson(), second.getObjectsJson());
+        Assert.assertEquals("MenuNotModified", notModified.getHeader());
+        Mockito.verify(restaurantService, Mockito.times(1)).getMenu("1");
+
+        byte[] frame = {1, 2, 3};
+        command.execute(null, new CommandArgs(Collections.singletonList("1"))).putFrame("smile", frame);
+        Assert.assertSame(frame, command.execute(null, new CommandArgs(Collections.singletonList("1"))).getFrame("smile"));
+        Assert.assertNull(Reply.text("x", "y").getFrame("smile"));
+
+        Mockito.when(restaurantService.getMenuVersion("1")).thenReturn(4L);
+        Mockito.when(restaurantService.getMenu("1")).thenReturn(new MenuDTO(4, restaurant, new ArrayList<>()));
+        Message changed = command.execute(null, new CommandArgs(Arrays.asList("1", "3"))).toMessage();
+        Assert.assertEquals(4, registry.getMapper().readValue(changed.getObjectsJson().get(0), MenuDTO.class).getVersion());
+    }
+
+    @Test
+    void statusChangesPublished() throws Exception {
+        OrderStatusChangeDTO moved = new OrderStatusChangeDTO(1, 7, Status.DELIVERED, true, null);
+        OrderStatusChangeDTO refused = new OrderStatusChangeDTO(2, 7, Status.CREATED, false,
+                "Invalid status. The order must be in progress first, then to be delivered!");
+        Mockito.when(orderService.changeOrderStatuses(Arrays.asList(1, 2), "DELIVERED"))
+                .thenReturn(Arrays.asList(moved, refused));
+        CommandContext context = Mockito.mock(CommandContext.class);
+
+        Message message = registry.lookup("changeOrderStatuses")
+                .execute(context, new CommandArgs(Arrays.asList("[1,2]", "DELIVERED"))).toMessage();
+
+        Assert.assertEquals(2, message.getObjectsJson().size());
+        Mockito.verify(context).publish(Mockito.eq(Topics.order(1)), Mockito.any(Reply.class));
+        Mockito.verify(context).publish(Mockito.eq(Topics.customer(7)), Mockito.any(Reply.class));
+        Mockito.verify(context, Mockito.never()).publish(Mockito.eq(Topics.order(2)), Mockito.any(Reply.class));
+    }
+
+    @Test
+    void subscriptionsChecked() throws Exception {
+        CommandContext context = Mockito.mock(CommandContext.class);
+        RegisteredCommand subscribe = registry.lookup("subscribe");
+
+        assertThrows(InvalidDataException.class,
+                () -> subscribe.execute(context, new CommandArgs(Collections.singletonList(Topics.customer(7)))));
+
+        Mockito.when(context.getUser()).thenReturn(UserDTO.builder().id(7).userType(UserType.REGULAR).build());
+        Mockito.when(orderService.isOrderOf(1, 7)).thenReturn(true);
+        subscribe.execute(context, new CommandArgs(Collections.singletonList(Topics.customer(7))));
+        subscribe.execute(context, new CommandArgs(Collections.singletonList(Topics.order(1))));
+        assertThrows(InvalidDataException.class,
+                () -> subscribe.execute(context, new CommandArgs(Collections.singletonList(Topics.customer(8)))));
+        assertThrows(InvalidDataException.class,
+                () -> subscribe.execute(context, new CommandArgs(Collections.singletonList(Topics.courier(7)))));
+        assertThrows(InvalidDataException.class,
+                () -> subscribe.execute(context, new CommandArgs(Collections.singletonList(Topics.order(2)))));
+        assertThrows(InvalidDataException.class,
+                () -> subscribe.execute(context, new CommandArgs(Collections.singletonList(Topics.restaurant(1)))));
+
+        Mockito.verify(context).subscribe(Topics.customer(7));
+        Mockito.verify(context).subscribe(Topics.order(1));
+        Mockito.verify(context, Mockito.times(2)).subscribe(Mockito.anyString());
+    }
+
+    @Test
+    void orderHistoryPageSizeChecked() throws Exception {
+        RegisteredCommand history = registry.lookup("getOrderHistory");
+
+        assertThrows(InvalidDataException.class,
+                () -> history.execute(null, new CommandArgs(Arrays.asList("{}", "", "ten"))));
+        Mockito.verify(orderService, Mockito.never()).getOrderHistory(Mockito.any(), Mockito.any(), Mockito.anyInt());
+
+        history.execute(null, new CommandArgs(Arrays.asList("{}", "", "10")));
+        Mockito.verify(orderService).getOrderHistory(Mockito.any(), Mockito.eq(""), Mockito.eq(10));
+    }
+
+    @Test
+    void unknownCommand() {
+        Assert.assertNull(registry.lookup("noSuchCommand"));
+        Assert.assertNull(registry.lookup(null));
+    }
+
+    @Test
+    void commandsWithoutReply() throws Exception {
+        Reply reply = registry.lookup("deleteRestaurant").execute(null, new CommandArgs(Collections.singletonList("1")));
+
+        Mockito.verify(restaurantService).deleteRestaurant("1");
+        Assert.assertNull(reply.toMessage());
+    }
+
+    @Test
+    void duplicateRegistration() {
+        assertThrows(IllegalStateException.class, () -> registry.register("getRestaurants", (context, args) -> Reply.none()));
+    }
+
+    @Test
+    void recordsTiming() throws Exception {
+        Mockito.when(restaurantService.getDiscounts("x")).thenThrow(new InvalidDataException("The given id is invalid!"));
+        RegisteredCommand command = registry.lookup("getDiscounts");
+
+        command.execute(null, new CommandArgs(Collections.singletonList("1")));
+        assertThrows(InvalidDataException.class, () -> command.execute(null, new CommandArgs(Collections.singletonList("x"))));
+
+        Assert.assertEquals(2, command.getStats().getCalls());
+        Assert.assertEquals(1, command.getStats().getFailures());
+    }
+}
@@ -0,0 +1,125 @@
+package application.controllers.notification;
+
+import application.controllers.commands.Reply;
+import application.dto.ItemDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.SliceImpl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+class MessageCodecTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final ObjectWriter itemWriter = mapper.writerFor(ItemDTO.class);
+
+    private List<ItemDTO> menu() {
+        List<ItemDTO> items = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            items.add(ItemDTO.builder().id(i).name("sashimi " + i).stock(10).price(5.0f).build());
+        }
+        return items;
+    }
+
+    /**
+     * Encodes the reply and splits it again with the codec's own decoder, a few bytes at a time
+     */
+    private Message roundTrip(MessageCodec codec, Reply reply) throws Exception {
+        return roundTrip(codec, reply, null);
+    }
+
+    private Message roundTrip(MessageCodec codec, Reply reply, String requestId) throws Exception {
+        byte[] encoded = codec.encode(reply, requestId);
+        List<byte[]> frames = new ArrayList<>();
+        FrameDecoder decoder = codec.newDecoder();
+        for (int offset = 0; offset < encoded.length; offset += 7) {
+            decoder.decode(ByteBuffer.wrap(encoded, offset, Math.min(7, encoded.length - offset)), frames::add);
+        }
+        Assert.assertEquals(1, frames.size());
+        return codec.decode(frames.get(0));
+    }
+
+    @Test
+    void legacyJson() throws Exception {
+        Message message = roundTrip(Protocol.JSON.codec(), Reply.list("ItemDTO", itemWriter, menu()));
+
+        Assert.assertEquals("ItemDTO", message.getHeader());
+        Assert.assertEquals(100, message.getObjectsJson().size());
+        Assert.assertEquals("sashimi 1", mapper.readValue(message.getObjectsJson().get(0), ItemDTO.class).getName());
+        Assert.assertNull(message.getPayload());
+    }
+
+    @Test
+    void envelopes() throws Exception {
+        for (Protocol protocol : new Protocol[]{Protocol.JSON_V2, Protocol.SMILE}) {
+            Message message = roundTrip(protocol.codec(), Reply.list("ItemDTO", itemWriter, menu()));
+
+            Assert.assertEquals("ItemDTO", message.getHeader());
+            Assert.assertEquals(100, message.getPayload().size());
+            Assert.assertEquals("sashimi 100", mapper.treeToValue(message.getPayload().get(99), ItemDTO.class).getName());
+        }
+    }
+
+    @Test
+    void textReplies() throws Exception {
+        Message message = roundTrip(Protocol.SMILE.codec(), Reply.text("courierNotification", "Order with id 1 was added"));
+
+        Assert.assertEquals("Order with id 1 was added", message.getPayload().get(0).textValue());
+    }
+
+    @Test
+    void requestIdEchoed() throws Exception {
+        for (Protocol protocol : Protocol.values()) {
+            Assert.assertEquals("7", roundTrip(protocol.codec(), Reply.text("protocol", "json"), "7").getRequestId());
+            Assert.assertEquals("8", roundTrip(protocol.codec(), Reply.none(), "8").getRequestId());
+            Assert.assertNull(roundTrip(protocol.codec(), Reply.text("protocol", "json")).getRequestId());
+        }
+    }
+
+    @Test
+    void streamedChunks() throws Exception {
+        List<ItemDTO> items = menu();
+        Reply streamed = Reply.stream("ItemDTO", itemWriter, pageable -> {
+            int from = (int) pageable.getOffset();
+            int to = Math.min(from + pageable.getPageSize(), items.size());
+            return new SliceImpl<>(items.subList(from, to), pageable, to < items.size());
+        });
+
+        Assert.assertEquals(100, streamed.collect(30).getObjects().size());
+
+        for (Protocol protocol : Protocol.values()) {
+            Message chunk = roundTrip(protocol.codec(), streamed.chunk(2, items.subList(0, 3), false), "9");
+            Message last = roundTrip(protocol.codec(), streamed.chunk(3, Collections.emptyList(), true));
+
+            Assert.assertEquals(Integer.valueOf(2), chunk.getChunk());
+            Assert.assertNull(chunk.getLast());
+            Assert.assertEquals("9", chunk.getRequestId());
+            Assert.assertEquals(Integer.valueOf(3), last.getChunk());
+            Assert.assertTrue(last.getLast());
+        }
+    }
+
+    @Test
+    void smallerPayloads() throws Exception {
+        Reply reply = Reply.list("ItemDTO", itemWriter, menu());
+        int legacy = Protocol.JSON.codec().encode(reply, null).length;
+        int json = Protocol.JSON_V2.codec().encode(reply, null).length;
+        int smile = Protocol.SMILE.codec().encode(reply, null).length;
+
+        Assert.assertTrue(json < legacy);
+        Assert.assertTrue(smile < json);
+    }
+
+    @Test
+    void noReply() throws Exception {
+        Assert.assertEquals("null\n", new String(Protocol.JSON.codec().encode(Reply.none(), null)));
+        Assert.assertEquals(Collections.emptyList(),
+                mapper.convertValue(roundTrip(Protocol.JSON_V2.codec(), Reply.none()).getPayload(), List.class));
+    }
+}
@@ -0,0 +1,56 @@
+package application.controllers.notification;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+class NioClientChannelTest {
+
+    private ServerSocketChannel server;
+    private Reactor reactor;
+    private Thread reactorThread;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = ServerSocketChannel.open().bind(new InetSocketAddress("localhost", 0));
+        reactor = new Reactor();
+        reactorThread = new Thread(reactor, "test-reactor");
+        reactorThread.setDaemon(true);
+        reactorThread.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        reactorThread.interrupt();
+        server.close();
+    }
+
+    @Test
+    void framesSentBeforeRegistrationAreFlushed() throws Exception {
+        try (Socket client = new Socket("localhost", server.socket().getLocalPort());
+             SocketChannel accepted = server.accept()) {
+            client.setSoTimeout(5000);
+            NioClientChannel channel = new NioClientChannel(accepted, reactor,
+                    new OutboundQueue(1 << 20, OverflowPolicy.DISCONNECT));
+
+            channel.send(ByteBuffer.wrap("first\n".getBytes(StandardCharsets.UTF_8)), true);
+            Thread.sleep(100);
+            channel.open(null);
+            channel.send(ByteBuffer.wrap("second\n".getBytes(StandardCharsets.UTF_8)), false);
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+            Assert.assertEquals("first", in.readLine());
+            Assert.assertEquals("second", in.readLine());
+        }
+    }
+}
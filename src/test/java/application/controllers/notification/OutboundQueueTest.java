@@ -0,0 +1,45 @@
+package application.controllers.notification;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+class OutboundQueueTest {
+
+    private ByteBuffer frame(int size) {
+        return ByteBuffer.allocate(size);
+    }
+
+    @Test
+    void dropsNotificationsAboveHighWaterMark() {
+        OutboundQueue queue = new OutboundQueue(100, OverflowPolicy.DROP_NOTIFICATIONS);
+
+        Assert.assertEquals(OutboundQueue.Offer.QUEUED, queue.offer(frame(80), true));
+        Assert.assertEquals(OutboundQueue.Offer.DROPPED, queue.offer(frame(40), true));
+        Assert.assertEquals(OutboundQueue.Offer.QUEUED, queue.offer(frame(40), false));
+        Assert.assertEquals(OutboundQueue.Offer.OVERFLOW, queue.offer(frame(100), false));
+        Assert.assertEquals(120, queue.getQueuedBytes());
+    }
+
+    @Test
+    void disconnectsAboveHighWaterMark() {
+        OutboundQueue queue = new OutboundQueue(100, OverflowPolicy.DISCONNECT);
+
+        Assert.assertEquals(OutboundQueue.Offer.QUEUED, queue.offer(frame(80), true));
+        Assert.assertEquals(OutboundQueue.Offer.OVERFLOW, queue.offer(frame(40), false));
+    }
+
+    @Test
+    void writtenFramesFreeTheQueue() {
+        OutboundQueue queue = new OutboundQueue(100, OverflowPolicy.DISCONNECT);
+        queue.offer(frame(80), false);
+
+        ByteBuffer polled = queue.poll();
+        Assert.assertEquals(80, queue.getQueuedBytes());
+        queue.written(polled.remaining());
+
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(OutboundQueue.Offer.QUEUED, queue.offer(frame(100), true));
+    }
+}
@@ -0,0 +1,116 @@
+package application.controllers.notification;
+
+import application.controllers.commands.CommandRegistry;
+import application.controllers.commands.Reply;
+import application.controllers.commands.Topics;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationContext;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+class SubscriptionRegistryTest {
+
+    /**
+     * Only queues the frames, as the real channels do, so nothing is ever written to a socket
+     */
+    private static class QueueingChannel implements ClientChannel {
+        final OutboundQueue queue;
+        final List<ByteBuffer> sent = new ArrayList<>();
+
+        QueueingChannel(OutboundQueue queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public boolean send(ByteBuffer frame, boolean notification) {
+            if (queue.offer(frame, notification) != OutboundQueue.Offer.QUEUED) {
+                return false;
+            }
+            sent.add(frame);
+            return true;
+        }
+
+        @Override
+        public boolean awaitDrained(long timeoutMillis) {
+            return true;
+        }
+
+        @Override
+        public void suspendReads() {
+        }
+
+        @Override
+        public void resumeReads() {
+        }
+
+        @Override
+        public void switchDecoder(FrameDecoder decoder) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private SubscriptionRegistry subscriptions;
+
+    @BeforeEach
+    void setUp() {
+        subscriptions = new SubscriptionRegistry();
+        ApplicationContext context = Mockito.mock(ApplicationContext.class);
+        Mockito.when(context.getBean(CommandRegistry.class)).thenReturn(Mockito.mock(CommandRegistry.class));
+        Mockito.when(context.getBean(SubscriptionRegistry.class)).thenReturn(subscriptions);
+        new BeanUtil().setApplicationContext(context);
+    }
+
+    private QueueingChannel subscribe(String topic, long queuedBytes) throws Exception {
+        QueueingChannel channel = new QueueingChannel(new OutboundQueue(1000, OverflowPolicy.DROP_NOTIFICATIONS));
+        if (queuedBytes > 0) {
+            channel.queue.offer(ByteBuffer.allocate((int) queuedBytes), false);
+        }
+        subscriptions.subscribe(topic, new ClientSocketConnection(channel, null, Runnable::run));
+        return channel;
+    }
+
+    @Test
+    void publishCountsDeliveredAndDropped() throws Exception {
+        String topic = Topics.restaurant(1);
+        List<QueueingChannel> keepingUp = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            keepingUp.add(subscribe(topic, 0));
+        }
+        QueueingChannel slow = subscribe(topic, 1000);
+        subscribe(Topics.restaurant(2), 0);
+        Reply message = Mockito.spy(Reply.text("OrderDTO", "new order"));
+
+        BroadcastResult result = subscriptions.publish(topic, message);
+
+        Assert.assertEquals(3, result.getDelivered());
+        Assert.assertEquals(1, result.getDropped());
+        Assert.assertTrue(slow.sent.isEmpty());
+        Assert.assertEquals(1000, slow.queue.getQueuedBytes());
+        Mockito.verify(message, Mockito.times(1)).toMessage();
+
+        ByteBuffer first = keepingUp.get(0).sent.get(0);
+        for (QueueingChannel channel : keepingUp) {
+            ByteBuffer frame = channel.sent.get(0);
+            Assert.assertTrue(frame.isReadOnly());
+            Assert.assertEquals(first, frame);
+        }
+        keepingUp.get(0).queue.poll().position(first.limit());
+        Assert.assertTrue(keepingUp.get(1).sent.get(0).hasRemaining());
+    }
+
+    @Test
+    void publishWithoutSubscribers() {
+        BroadcastResult result = subscriptions.publish(Topics.order(1), Reply.text("OrderStatusChangeDTO"));
+
+        Assert.assertEquals(0, result.getDelivered());
+        Assert.assertEquals(0, result.getDropped());
+    }
+}
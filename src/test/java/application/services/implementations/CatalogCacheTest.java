@@ -0,0 +1,198 @@
+package application.services.implementations;
+
+import application.dto.CacheRegionDTO;
+import application.dto.ItemDTO;
+import application.dto.MenuDTO;
+import application.dto.UserDTO;
+import application.entities.DeliveryUser;
+import application.entities.Discount;
+import application.entities.Item;
+import application.entities.RegularUser;
+import application.entities.Restaurant;
+import application.repositories.DiscountRepository;
+import application.repositories.ItemRepository;
+import application.repositories.OrderRepository;
+import application.repositories.OrderedItemRepository;
+import application.repositories.RestaurantRepository;
+import application.repositories.UserRepository;
+import application.services.CacheService;
+import application.services.RestaurantService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+
+/**
+ * Reads the catalog in committed transactions, the way separate client requests do, so that the second-level cache
+ * is filled and used
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({RestaurantServiceImpl.class, DiscountTierCache.class, CacheServiceImpl.class})
+class CatalogCacheTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private DiscountRepository discountRepository;
+
+    @Autowired
+    private RestaurantService restaurantService;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderedItemRepository orderedItemRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Statistics statistics;
+
+    private Restaurant restaurant;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        restaurant = restaurantRepository.save(Restaurant.builder().name("restaurant").build());
+        for (int i = 0; i < 3; i++) {
+            itemRepository.save(Item.builder().name("item " + i).stock(10).price(5).restaurant(restaurant).build());
+        }
+        discountRepository.save(Discount.builder().minItemNumber(3).percentage(10).discRestaurant(restaurant).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        orderedItemRepository.deleteAllInBatch();
+        orderRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+        discountRepository.deleteAllInBatch();
+        itemRepository.deleteAllInBatch();
+        restaurantRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void restaurantAndItemsServedFromCache() throws Exception {
+        String id = String.valueOf(restaurant.getId());
+        Assert.assertEquals(3, restaurantService.findSelectedRestaurant(id).getItems().size());
+
+        statistics.clear();
+        Assert.assertEquals(3, restaurantService.findSelectedRestaurant(id).getItems().size());
+        Assert.assertEquals(3, restaurantService.getRestaurantItems(id).size());
+        Assert.assertEquals(0, statistics.getPrepareStatementCount());
+        Assert.assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+    }
+
+    @Test
+    void newItemDropsCachedList() throws Exception {
+        String id = String.valueOf(restaurant.getId());
+        Assert.assertEquals(3, restaurantService.getRestaurantItems(id).size());
+
+        itemRepository.save(Item.builder().name("item 3").stock(10).price(5).restaurant(restaurant).build());
+
+        Assert.assertEquals(4, restaurantService.getRestaurantItems(id).size());
+    }
+
+    @Test
+    void itemsOfRestaurantQueryCached() {
+        Assert.assertEquals(3, itemRepository.findByRestaurantId(restaurant.getId()).size());
+
+        statistics.clear();
+        Assert.assertEquals(3, itemRepository.findByRestaurantId(restaurant.getId()).size());
+        Assert.assertEquals(0, statistics.getPrepareStatementCount());
+        Assert.assertEquals(1, statistics.getQueryCacheHitCount());
+    }
+
+    @Test
+    void menuVersionFollowsChanges() throws Exception {
+        String id = String.valueOf(restaurant.getId());
+        long version = restaurantService.getMenuVersion(id);
+        Assert.assertEquals(1, restaurantService.getMenu(id).getDiscounts().size());
+
+        restaurantService.addDiscount(id, "5", "20");
+
+        Assert.assertEquals(version + 1, restaurantService.getMenuVersion(id));
+        MenuDTO menu = restaurantService.getMenu(id);
+        Assert.assertEquals(version + 1, menu.getVersion());
+        Assert.assertEquals(2, menu.getDiscounts().size());
+        Assert.assertEquals(3, menu.getRestaurant().getItems().size());
+    }
+
+    @Test
+    void menuChangeKeepsOtherRestaurantsCached() throws Exception {
+        Restaurant other = restaurantRepository.save(Restaurant.builder().name("other").build());
+        String id = String.valueOf(restaurant.getId());
+        String otherId = String.valueOf(other.getId());
+        long version = restaurantService.getMenuVersion(id);
+        restaurantService.getMenuVersion(otherId);
+
+        restaurantService.addDiscount(id, "5", "20");
+
+        statistics.clear();
+        Assert.assertEquals(0, restaurantService.getMenuVersion(otherId));
+        Assert.assertEquals(0, statistics.getPrepareStatementCount());
+        Assert.assertEquals(version + 1, restaurantService.getMenuVersion(id));
+    }
+
+    @Test
+    void orderLeavesMenuCurrent() throws Exception {
+        String id = String.valueOf(restaurant.getId());
+        MenuDTO before = restaurantService.getMenu(id);
+        ConcurrencyRetry retry = new ConcurrencyRetry(new TransactionTemplate(transactionManager), 1, 0);
+        CourierDispatcher dispatcher = new CourierDispatcher(userRepository,
+                new CourierLocations(userRepository, retry, 0.01, 300000, 10), 3);
+        OrderServiceImpl orderService = new OrderServiceImpl(orderRepository, itemRepository, userRepository,
+                orderedItemRepository, new DiscountTierCache(discountRepository), dispatcher, retry);
+        RegularUser customer = userRepository.save(RegularUser.builder().name("customer").username("customer")
+                .password("0000").wallet(100).build());
+        userRepository.save(DeliveryUser.builder().name("courier").username("courier").password("0000").build());
+        ItemDTO ordered = before.getRestaurant().getItems().get(0);
+
+        orderService.createNewOrder(new UserDTO(userRepository.findById(customer.getId()).get()),
+                restaurantService.findSelectedRestaurant(id), Collections.singletonMap(String.valueOf(ordered.getId()), "2"));
+
+        MenuDTO after = restaurantService.getMenu(id);
+        Assert.assertEquals(before.getVersion(), after.getVersion());
+        Assert.assertNull(after.getRestaurant().getItems().get(0).getStock());
+        Assert.assertNull(after.getRestaurant().getRating());
+        Assert.assertEquals(Integer.valueOf(8), restaurantService.getRestaurantItems(id).stream()
+                .filter(item -> item.getId() == ordered.getId()).findFirst().get().getStock());
+    }
+
+    @Test
+    void cacheStatistics() throws Exception {
+        restaurantService.findSelectedRestaurant(String.valueOf(restaurant.getId()));
+        restaurantService.findSelectedRestaurant(String.valueOf(restaurant.getId()));
+
+        CacheRegionDTO restaurants = cacheService.getCacheStatistics().stream()
+                .filter(region -> region.getRegion().equals(Restaurant.class.getName())).findFirst().orElse(null);
+        Assert.assertNotNull(restaurants);
+        Assert.assertTrue(restaurants.getHits() > 0);
+    }
+}
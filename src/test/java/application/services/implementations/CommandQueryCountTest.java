@@ -0,0 +1,205 @@
+package application.services.implementations;
+
+import application.controllers.commands.Reply;
+import application.dto.RestaurantDTO;
+import application.dto.UserDTO;
+import application.entities.*;
+import application.repositories.*;
+import application.services.OrderService;
+import application.services.RatingService;
+import application.services.RestaurantService;
+import application.services.UserService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.support.TransactionOperations;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the statements the services run for the commands of a client, against an in-memory database
+ */
+@DataJpaTest(properties = {"spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+class CommandQueryCountTest {
+
+    private interface Call {
+        void run() throws Exception;
+    }
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    @Autowired
+    private UserFavouriteRestaurantRepository userFavouriteRestaurantRepository;
+
+    @Autowired
+    private RatingRepository ratingRepository;
+
+    @Autowired
+    private DiscountRepository discountRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private OrderedItemRepository orderedItemRepository;
+
+    private UserService userService;
+    private RestaurantService restaurantService;
+    private OrderService orderService;
+    private RatingService ratingService;
+
+    private Statistics statistics;
+
+    private RegularUser customer;
+    private Restaurant restaurant;
+
+    @BeforeEach
+    void setUp() {
+        ConcurrencyRetry retry = new ConcurrencyRetry(TransactionOperations.withoutTransaction(), 1, 0);
+        DiscountTierCache discountTiers = new DiscountTierCache(discountRepository);
+        userService = new UserServiceImpl(userRepository, restaurantRepository, userFavouriteRestaurantRepository,
+                ratingRepository, retry);
+        restaurantService = new RestaurantServiceImpl(restaurantRepository, discountRepository, discountTiers);
+        CourierDispatcher dispatcher = new CourierDispatcher(userRepository,
+                new CourierLocations(userRepository, retry, 0.01, 300000, 10), 3);
+        orderService = new OrderServiceImpl(orderRepository, itemRepository, userRepository, orderedItemRepository,
+                discountTiers, dispatcher, retry);
+        ratingService = new RatingServiceImpl(ratingRepository, restaurantRepository, userRepository);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        customer = entityManager.persist(RegularUser.builder().name("customer").username("customer")
+                .password("0000").wallet(100).build());
+        DeliveryUser courier = entityManager.persist(DeliveryUser.builder().name("courier").username("courier")
+                .password("0000").build());
+        for (int r = 0; r < 3; r++) {
+            restaurant = entityManager.persist(Restaurant.builder().name("restaurant " + r).build());
+            entityManager.persist(Rating.builder().rate(r + 1).ratedRestaurant(restaurant).user(customer).build());
+            entityManager.persist(UserFavouriteRestaurant.builder().regularUser(customer)
+                    .favouriteRestaurant(restaurant).build());
+            for (int i = 0; i < 2; i++) {
+                Item item = entityManager.persist(Item.builder().name("item " + i).stock(10).price(5.0f)
+                        .restaurant(restaurant).build());
+                Order order = entityManager.persist(Order.builder().customer(customer).courier(courier)
+                        .status(Status.CREATED).createdAt(Instant.parse("2020-01-01T12:00:00Z")).build());
+                entityManager.persist(OrderedItem.builder().item(item).orderObj(order).quantity(1).build());
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private long countStatements(Call call) throws Exception {
+        statistics.clear();
+        call.run();
+        entityManager.flush();
+        entityManager.clear();
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    void login() throws Exception {
+        Assert.assertEquals(1, countStatements(() -> userService.loginUser("customer", "0000")));
+    }
+
+    @Test
+    void getUsers() throws Exception {
+        Assert.assertEquals(1, countStatements(() -> userService.getRegularUsers(Reply.firstPage(100))));
+    }
+
+    @Test
+    void getRestaurants() throws Exception {
+        Assert.assertEquals(2, countStatements(() -> restaurantService.getRestaurants(Reply.firstPage(100))));
+    }
+
+    @Test
+    void getSelRestaurant() throws Exception {
+        String id = String.valueOf(restaurant.getId());
+        // the restaurant and then its items, both served from the second-level cache afterwards
+        Assert.assertEquals(2, countStatements(() -> restaurantService.findSelectedRestaurant(id)));
+    }
+
+    @Test
+    void getItems() throws Exception {
+        String id = String.valueOf(restaurant.getId());
+        Assert.assertEquals(2, countStatements(() -> restaurantService.getRestaurantItems(id)));
+    }
+
+    @Test
+    void getFavouriteRestaurants() throws Exception {
+        String id = String.valueOf(customer.getId());
+        Assert.assertEquals(2, countStatements(() -> userService.getFavouriteRestaurants(id)));
+    }
+
+    @Test
+    void getOrders() throws Exception {
+        Assert.assertEquals(1, countStatements(() -> orderService.getOrders(Reply.firstPage(100))));
+    }
+
+    @Test
+    void getRatings() throws Exception {
+        String id = String.valueOf(customer.getId());
+        Assert.assertEquals(1, countStatements(() -> ratingService.getRatings(id, Reply.firstPage(100))));
+    }
+
+    @Test
+    void orderItems() throws Exception {
+        List<Item> items = itemRepository.findByRestaurantId(restaurant.getId());
+        UserDTO customerDTO = new UserDTO(userRepository.findById(customer.getId()).get());
+        RestaurantDTO restaurantDTO = restaurantService.findSelectedRestaurant(String.valueOf(restaurant.getId()));
+        Map<String, String> oneLine = Collections.singletonMap(String.valueOf(items.get(0).getId()), "2");
+        Map<String, String> twoLines = new HashMap<>();
+        twoLines.put(String.valueOf(items.get(0).getId()), "1");
+        twoLines.put(String.valueOf(items.get(1).getId()), "3");
+        // the first order also takes a block of ids from each sequence and reads the restaurant's discounts
+        orderService.createNewOrder(customerDTO, restaurantDTO, oneLine);
+        entityManager.flush();
+        entityManager.clear();
+
+        // plus the stock updates, one JDBC batch sent on the connection, which Hibernate does not count
+        Assert.assertEquals(7, countStatements(() -> orderService.createNewOrder(customerDTO, restaurantDTO, oneLine)));
+        Assert.assertEquals(7, countStatements(() -> orderService.createNewOrder(customerDTO, restaurantDTO, twoLines)));
+
+        Assert.assertEquals(5, itemRepository.findById(items.get(0).getId()).get().getStock());
+        Assert.assertEquals(7, itemRepository.findById(items.get(1).getId()).get().getStock());
+        Assert.assertEquals(60, ((RegularUser) userRepository.findById(customer.getId()).get()).getWallet(), 0.01);
+        Assert.assertEquals(60, customerDTO.getWallet(), 0.01);
+    }
+
+    @Test
+    void changeOrderStatuses() throws Exception {
+        List<Integer> ids = orderRepository.findAll().stream().map(Order::getId).collect(Collectors.toList());
+        String first = String.valueOf(ids.get(0));
+
+        Assert.assertEquals(2, countStatements(() -> orderService.changeOrderStatus(first, "IN_PROGRESS")));
+        Assert.assertEquals(2, countStatements(() -> orderService.changeOrderStatuses(ids, "IN_PROGRESS")));
+
+        for (Order order : orderRepository.findAll()) {
+            Assert.assertEquals(Status.IN_PROGRESS, order.getStatus());
+        }
+    }
+}
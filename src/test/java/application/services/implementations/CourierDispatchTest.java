@@ -0,0 +1,285 @@
+package application.services.implementations;
+
+import application.dto.RestaurantDTO;
+import application.dto.UserDTO;
+import application.entities.*;
+import application.repositories.*;
+import application.services.CourierService;
+import application.services.OrderService;
+import application.services.exceptions.EntityNotFoundException;
+import application.services.exceptions.InvalidDataException;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Places committed orders with three couriers, two of which already have orders to deliver
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CourierDispatchTest {
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private OrderedItemRepository orderedItemRepository;
+
+    @Autowired
+    private DiscountRepository discountRepository;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    private CourierLocations locations;
+    private CourierDispatcher dispatcher;
+    private OrderService orderService;
+
+    private RegularUser customer;
+    private DeliveryUser busy;
+    private DeliveryUser lessBusy;
+    private DeliveryUser idle;
+    private Order inProgress;
+    private Restaurant restaurant;
+    private Item item;
+
+    @BeforeEach
+    void setUp() {
+        ConcurrencyRetry retry = new ConcurrencyRetry(new TransactionTemplate(transactionManager), 1, 0);
+        locations = new CourierLocations(userRepository, retry, 0.01, 300000, 10);
+        dispatcher = new CourierDispatcher(userRepository, locations, 3);
+        orderService = new OrderServiceImpl(orderRepository, itemRepository, userRepository, orderedItemRepository,
+                new DiscountTierCache(discountRepository), dispatcher, retry);
+
+        customer = userRepository.save(RegularUser.builder().name("customer").username("customer")
+                .password("0000").wallet(100).build());
+        busy = userRepository.save(DeliveryUser.builder().name("busy").username("busy").password("0000").build());
+        lessBusy = userRepository.save(DeliveryUser.builder().name("less busy").username("lessBusy")
+                .password("0000").build());
+        idle = userRepository.save(DeliveryUser.builder().name("idle").username("idle").password("0000").build());
+        restaurant = restaurantRepository.save(Restaurant.builder().name("restaurant").items(new ArrayList<>())
+                .build());
+        item = itemRepository.save(Item.builder().name("item").stock(100).price(1).restaurant(restaurant).build());
+
+        addOrder(busy, Status.CREATED);
+        addOrder(busy, Status.IN_PROGRESS);
+        addOrder(busy, Status.DELIVERED);
+        inProgress = addOrder(lessBusy, Status.IN_PROGRESS);
+        dispatcher.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        orderedItemRepository.deleteAllInBatch();
+        orderRepository.deleteAllInBatch();
+        itemRepository.deleteAllInBatch();
+        restaurantRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    private Order addOrder(DeliveryUser courier, Status status) {
+        return orderRepository.save(Order.builder().customer(customer).courier(courier).status(status)
+                .createdAt(Instant.now()).build());
+    }
+
+    private void order(int quantity) throws Exception {
+        order(orderService, quantity);
+    }
+
+    private void order(OrderService orderService, int quantity) throws Exception {
+        Map<String, String> items = Collections.singletonMap(String.valueOf(item.getId()), String.valueOf(quantity));
+        orderService.createNewOrder(new UserDTO(userRepository.findById(customer.getId()).get()),
+                new RestaurantDTO(restaurant), items);
+    }
+
+    private int courierOfLastOrder() {
+        return orderRepository.findAll().stream().max(Comparator.comparingInt(Order::getId)).get().getCourier()
+                .getId();
+    }
+
+    @Test
+    void rebuildCountsUndeliveredOrders() {
+        Assert.assertEquals(2, dispatcher.getActiveOrders(busy.getId()));
+        Assert.assertEquals(1, dispatcher.getActiveOrders(lessBusy.getId()));
+        Assert.assertEquals(0, dispatcher.getActiveOrders(idle.getId()));
+    }
+
+    @Test
+    void ordersGoToLeastLoaded() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            order(1);
+        }
+
+        for (DeliveryUser courier : new DeliveryUser[]{busy, lessBusy, idle}) {
+            Assert.assertEquals(3, dispatcher.getActiveOrders(courier.getId()));
+        }
+        dispatcher.rebuild();
+        for (DeliveryUser courier : new DeliveryUser[]{busy, lessBusy, idle}) {
+            Assert.assertEquals(3, dispatcher.getActiveOrders(courier.getId()));
+        }
+    }
+
+    @Test
+    void refusedOrderNotCounted() {
+        assertThrows(InvalidDataException.class, () -> order(101));
+
+        Assert.assertEquals(0, dispatcher.getActiveOrders(idle.getId()));
+    }
+
+    @Test
+    void rebuildKeepsUncommittedAssignments() {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            Assert.assertEquals(idle.getId(), (int) dispatcher.assign(null, null));
+            dispatcher.rebuild();
+            Assert.assertEquals(1, dispatcher.getActiveOrders(idle.getId()));
+            status.setRollbackOnly();
+            return null;
+        });
+
+        Assert.assertEquals(0, dispatcher.getActiveOrders(idle.getId()));
+        Assert.assertEquals(1, dispatcher.getActiveOrders(lessBusy.getId()));
+    }
+
+    @Test
+    void rebuildCountsOrdersCommittedBeforeItReadsOnce() throws Exception {
+        UserRepository reading = Mockito.mock(UserRepository.class, AdditionalAnswers.delegatesTo(userRepository));
+        CourierDispatcher dispatcher = new CourierDispatcher(reading, locations, 3);
+        OrderService orderService = new OrderServiceImpl(orderRepository, itemRepository, userRepository,
+                orderedItemRepository, new DiscountTierCache(discountRepository), dispatcher,
+                new ConcurrencyRetry(new TransactionTemplate(transactionManager), 1, 0));
+        dispatcher.rebuild();
+        Mockito.doAnswer(invocation -> {
+            order(orderService, 1);
+            orderService.changeOrderStatus(String.valueOf(inProgress.getId()), "DELIVERED");
+            return userRepository.findActiveOrdersByCourier(invocation.getArgument(0));
+        }).when(reading).findActiveOrdersByCourier(Mockito.anyCollection());
+
+        dispatcher.rebuild();
+
+        Assert.assertEquals(1, dispatcher.getActiveOrders(idle.getId()));
+        Assert.assertEquals(0, dispatcher.getActiveOrders(lessBusy.getId()));
+        Assert.assertEquals(2, dispatcher.getActiveOrders(busy.getId()));
+    }
+
+    @Test
+    void rebuildBetweenCommitAndCompletionCountsOnce() {
+        addOrder(lessBusy, Status.CREATED);
+        dispatcher.rebuild();
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    dispatcher.rebuild();
+                }
+            });
+            try {
+                order(1);
+                orderService.changeOrderStatus(String.valueOf(inProgress.getId()), "DELIVERED");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return null;
+        });
+
+        Assert.assertEquals(1, dispatcher.getActiveOrders(idle.getId()));
+        Assert.assertEquals(1, dispatcher.getActiveOrders(lessBusy.getId()));
+    }
+
+    @Test
+    void deliveryFreesCourier() throws Exception {
+        orderService.changeOrderStatus(String.valueOf(inProgress.getId()), "DELIVERED");
+        Assert.assertEquals(0, dispatcher.getActiveOrders(lessBusy.getId()));
+
+        order(1);
+        order(1);
+
+        Assert.assertEquals(1, dispatcher.getActiveOrders(lessBusy.getId()));
+        Assert.assertEquals(1, dispatcher.getActiveOrders(idle.getId()));
+    }
+
+    @Test
+    void nearestCourierWithRoomAssigned() throws Exception {
+        restaurant.setLatitude(46.770);
+        restaurant.setLongitude(23.590);
+        restaurantRepository.save(restaurant);
+        locations.update(busy.getId(), 46.771, 23.590);
+        locations.update(lessBusy.getId(), 46.775, 23.590);
+        locations.update(idle.getId(), 46.800, 23.590);
+
+        order(1);
+        Assert.assertEquals(busy.getId(), courierOfLastOrder());
+        order(1);
+        Assert.assertEquals(lessBusy.getId(), courierOfLastOrder());
+        order(1);
+        Assert.assertEquals(lessBusy.getId(), courierOfLastOrder());
+        order(1);
+        Assert.assertEquals(idle.getId(), courierOfLastOrder());
+    }
+
+    @Test
+    void newCourierAddedOnFirstReport() throws Exception {
+        CourierService courierService = new CourierServiceImpl(dispatcher, locations, userRepository);
+        DeliveryUser added = userRepository.save(DeliveryUser.builder().name("added").username("added")
+                .password("0000").build());
+        restaurant.setLatitude(46.770);
+        restaurant.setLongitude(23.590);
+        restaurantRepository.save(restaurant);
+        Assert.assertFalse(dispatcher.isCourier(added.getId()));
+
+        courierService.updateLocation(String.valueOf(added.getId()), "46.771", "23.590");
+        order(1);
+
+        Assert.assertEquals(added.getId(), courierOfLastOrder());
+        Assert.assertEquals(1, dispatcher.getActiveOrders(added.getId()));
+        assertThrows(EntityNotFoundException.class,
+                () -> courierService.updateLocation(String.valueOf(customer.getId()), "46.771", "23.590"));
+    }
+
+    @Test
+    void locationsWrittenBehind() {
+        locations.update(idle.getId(), 46.0, 23.0);
+        locations.update(idle.getId(), 46.5, 23.5);
+        Assert.assertNull(((DeliveryUser) userRepository.findById(idle.getId()).get()).getLatitude());
+
+        locations.flush();
+
+        DeliveryUser saved = (DeliveryUser) userRepository.findById(idle.getId()).get();
+        Assert.assertEquals(46.5, saved.getLatitude(), 0.0001);
+        Assert.assertEquals(23.5, saved.getLongitude(), 0.0001);
+        Assert.assertNotNull(saved.getLocatedAt());
+
+        CourierLocations restarted = new CourierLocations(userRepository,
+                new ConcurrencyRetry(new TransactionTemplate(transactionManager), 1, 0), 0.01, 300000, 10);
+        restarted.load();
+        Assert.assertEquals(idle.getId(), (int) restarted.findNearest(46.5, 23.5, id -> true));
+    }
+}
@@ -0,0 +1,74 @@
+package application.services.implementations;
+
+import application.repositories.UserRepository;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.Random;
+
+class CourierLocationsTest {
+
+    private static final int COURIERS = 10000;
+    private static final double RADIUS_KM = 10;
+
+    private CourierLocations locations;
+
+    private final double[][] positions = new double[COURIERS][];
+
+    @BeforeEach
+    void setUp() {
+        locations = new CourierLocations(Mockito.mock(UserRepository.class),
+                new ConcurrencyRetry(TransactionOperations.withoutTransaction(), 1, 0), 0.01, 300000, RADIUS_KM);
+        Random random = new Random(7);
+        for (int i = 0; i < COURIERS; i++) {
+            positions[i] = new double[]{46.6 + random.nextDouble() * 0.3, 23.4 + random.nextDouble() * 0.4};
+            locations.update(i, positions[i][0], positions[i][1]);
+        }
+    }
+
+    /**
+     * Nearest courier with an even id by comparing the distance to every courier
+     */
+    private Integer scan(double latitude, double longitude) {
+        Integer nearest = null;
+        double nearestKm = RADIUS_KM;
+        for (int i = 0; i < COURIERS; i += 2) {
+            double x = Math.toRadians(positions[i][1] - longitude)
+                    * Math.cos(Math.toRadians((positions[i][0] + latitude) / 2));
+            double y = Math.toRadians(positions[i][0] - latitude);
+            double km = Math.sqrt(x * x + y * y) * 6371;
+            if (km <= nearestKm) {
+                nearest = i;
+                nearestKm = km;
+            }
+        }
+        return nearest;
+    }
+
+    @Test
+    void findsNearestAvailable() {
+        Random random = new Random(11);
+        for (int query = 0; query < 200; query++) {
+            double latitude = 46.5 + random.nextDouble() * 0.5;
+            double longitude = 23.3 + random.nextDouble() * 0.6;
+            Assert.assertEquals(scan(latitude, longitude),
+                    locations.findNearest(latitude, longitude, id -> id % 2 == 0));
+        }
+    }
+
+    @Test
+    void movedCourierFoundAtNewPosition() {
+        locations.update(1, 10.0, 10.0);
+
+        Assert.assertEquals(1, (int) locations.findNearest(10.0, 10.001, id -> true));
+        Assert.assertNotEquals(Integer.valueOf(1), locations.findNearest(positions[1][0], positions[1][1], id -> true));
+    }
+
+    @Test
+    void nobodyBeyondRadius() {
+        Assert.assertNull(locations.findNearest(48.0, 23.5, id -> true));
+    }
+}
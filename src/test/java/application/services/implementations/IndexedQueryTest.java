@@ -0,0 +1,138 @@
+package application.services.implementations;
+
+import application.entities.*;
+import application.repositories.*;
+import application.services.RatingService;
+import application.services.RestaurantService;
+import application.services.UserService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.support.TransactionOperations;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Grows the rating, discount and user tables around one customer and restaurant, and checks that their lists are
+ * read through an index and load the same rows whatever the size of the tables
+ */
+@DataJpaTest(properties = {"spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+class IndexedQueryTest {
+
+    private static final int OTHER_ROWS = 500;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    @Autowired
+    private UserFavouriteRestaurantRepository userFavouriteRestaurantRepository;
+
+    @Autowired
+    private RatingRepository ratingRepository;
+
+    @Autowired
+    private DiscountRepository discountRepository;
+
+    private UserService userService;
+    private RestaurantService restaurantService;
+    private RatingService ratingService;
+
+    private Statistics statistics;
+
+    private RegularUser customer;
+    private Restaurant restaurant;
+
+    @BeforeEach
+    void setUp() {
+        ConcurrencyRetry retry = new ConcurrencyRetry(TransactionOperations.withoutTransaction(), 1, 0);
+        DiscountTierCache discountTiers = new DiscountTierCache(discountRepository);
+        userService = new UserServiceImpl(userRepository, restaurantRepository, userFavouriteRestaurantRepository,
+                ratingRepository, retry);
+        restaurantService = new RestaurantServiceImpl(restaurantRepository, discountRepository, discountTiers);
+        ratingService = new RatingServiceImpl(ratingRepository, restaurantRepository, userRepository);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        customer = entityManager.persist(RegularUser.builder().name("customer").username("customer")
+                .password("0000").build());
+        restaurant = entityManager.persist(Restaurant.builder().name("restaurant").build());
+        entityManager.persist(Rating.builder().rate(5).ratedRestaurant(restaurant).user(customer).build());
+        entityManager.persist(Discount.builder().minItemNumber(3).percentage(10).discRestaurant(restaurant).build());
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    /**
+     * Adds couriers and other restaurants, each with a discount and a rating by its own customer
+     */
+    private void growTables() {
+        for (int i = 0; i < OTHER_ROWS; i++) {
+            entityManager.persist(DeliveryUser.builder().name("courier").username("courier" + i).password("0000")
+                    .build());
+            RegularUser other = entityManager.persist(RegularUser.builder().name("other").username("other" + i)
+                    .password("0000").build());
+            Restaurant otherRestaurant = entityManager.persist(Restaurant.builder().name("other " + i).build());
+            entityManager.persist(Rating.builder().rate(3).ratedRestaurant(otherRestaurant).user(other).build());
+            entityManager.persist(Discount.builder().minItemNumber(3).percentage(5).discRestaurant(otherRestaurant)
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private String plan(String query) {
+        return entityManager.getEntityManager().createNativeQuery("explain " + query).getSingleResult().toString()
+                .toLowerCase();
+    }
+
+    @Test
+    void ratingsOfOneUser() throws Exception {
+        String id = String.valueOf(customer.getId());
+        Assert.assertEquals(1, ratingService.getRatings(id).size());
+        growTables();
+
+        statistics.clear();
+        Assert.assertEquals(1, ratingService.getRatings(id).size());
+        Assert.assertEquals(1, statistics.getPrepareStatementCount());
+        Assert.assertEquals(3, statistics.getEntityLoadCount());
+        Assert.assertTrue(plan("select * from rating where user_id = " + id).contains("rating_user_idx"));
+    }
+
+    @Test
+    void discountsOfOneRestaurant() throws Exception {
+        String id = String.valueOf(restaurant.getId());
+        growTables();
+
+        statistics.clear();
+        Assert.assertEquals(1, restaurantService.getDiscounts(id).size());
+        Assert.assertEquals(1, statistics.getPrepareStatementCount());
+        Assert.assertEquals(1, statistics.getEntityLoadCount());
+        Assert.assertTrue(plan("select * from discount where disc_restaurant_id = " + id)
+                .contains("discount_restaurant_idx"));
+    }
+
+    @Test
+    void regularUsers() {
+        growTables();
+
+        statistics.clear();
+        Assert.assertEquals(OTHER_ROWS + 1, userService.getAllRegularUsers().size());
+        Assert.assertEquals(1, statistics.getPrepareStatementCount());
+        Assert.assertEquals(OTHER_ROWS + 1, statistics.getEntityLoadCount());
+        Assert.assertTrue(plan("select * from user where user_type = 'DELIVERY'").contains("user_type_idx"));
+    }
+}
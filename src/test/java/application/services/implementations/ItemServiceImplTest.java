@@ -16,6 +16,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.internal.matchers.apachecommons.ReflectionEquals;
+import org.springframework.transaction.support.TransactionOperations;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -34,7 +35,8 @@ class ItemServiceImplTest {
     void setUp() {
         itemRepository = Mockito.mock(ItemRepository.class);
         restaurantRepository = Mockito.mock(RestaurantRepository.class);
-        itemService = new ItemServiceImpl(itemRepository,restaurantRepository);
+        itemService = new ItemServiceImpl(itemRepository,restaurantRepository,
+                new ConcurrencyRetry(TransactionOperations.withoutTransaction(), 1, 0));
     }
 
     @Test
@@ -83,7 +85,7 @@ class ItemServiceImplTest {
         items.get(0).setRestaurant(restaurant);
         restaurant.setItems(items);
 
-        Mockito.when(restaurantRepository.findById(1)).thenReturn(java.util.Optional.of(restaurant));
+        Mockito.when(restaurantRepository.findWithItemsById(1)).thenReturn(java.util.Optional.of(restaurant));
         Mockito.doAnswer(invocationOnMock -> {
             if(invocationOnMock.getArguments()[0] instanceof Item)
                 return item;
@@ -92,6 +94,7 @@ class ItemServiceImplTest {
 
         Item obtainedItem = itemService.addItem(new RestaurantDTO(restaurant),"suc","10","4.5");
         Assert.assertTrue(obtainedItem.getRestaurant().equals(item.getRestaurant()) && obtainedItem.equals(item));
+        Mockito.verify(restaurantRepository).bumpMenuVersion(1);
     }
 
     @Test
@@ -107,7 +110,7 @@ class ItemServiceImplTest {
         restaurant.setItems(items);
 
         Mockito.when(itemRepository.findById(1)).thenReturn(java.util.Optional.ofNullable(item));
-        Mockito.when(restaurantRepository.findById(1)).thenReturn(java.util.Optional.of(restaurant));
+        Mockito.when(restaurantRepository.findWithItemsById(1)).thenReturn(java.util.Optional.of(restaurant));
 
         Mockito.doAnswer(invocationOnMock -> {
             if(invocationOnMock.getArguments()[0] instanceof Item)
@@ -139,7 +142,7 @@ class ItemServiceImplTest {
         restaurant.setItems(items);
 
         Mockito.when(itemRepository.findById(1)).thenReturn(java.util.Optional.ofNullable(item));
-        Mockito.when(restaurantRepository.findById(1)).thenReturn(java.util.Optional.of(restaurant));
+        Mockito.when(restaurantRepository.findWithItemsById(1)).thenReturn(java.util.Optional.of(restaurant));
 
         Mockito.doAnswer(invocationOnMock -> {
             if(invocationOnMock.getArguments()[0] instanceof Item)
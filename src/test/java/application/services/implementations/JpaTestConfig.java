@@ -0,0 +1,20 @@
+package application.services.implementations;
+
+import application.CacheConfiguration;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+/**
+ * Only the JPA layer and its cache manager for the database tests of this package, the application's own component
+ * scan would also start the notification server
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@EntityScan("application.entities")
+@EnableJpaRepositories("application.repositories")
+@Import(CacheConfiguration.class)
+class JpaTestConfig {
+}
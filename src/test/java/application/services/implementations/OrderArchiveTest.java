@@ -0,0 +1,126 @@
+package application.services.implementations;
+
+import application.entities.*;
+import application.repositories.*;
+import application.services.OrderArchiveService;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Archives committed orders in batches smaller than the number of orders to move
+ */
+@DataJpaTest(properties = {"spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "orders.archive.enabled=false", "orders.archive.batch-size=7"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(OrderArchiveServiceImpl.class)
+class OrderArchiveTest {
+
+    private static final int OLD_DELIVERED = 20;
+    private static final int OLD_UNDELIVERED = 3;
+    private static final int RECENT = 5;
+    private static final Instant HORIZON = Instant.parse("2020-06-01T00:00:00Z");
+
+    @Autowired
+    private OrderArchiveService orderArchiveService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderedItemRepository orderedItemRepository;
+
+    @Autowired
+    private OrderArchiveRepository orderArchiveRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private RegularUser customer;
+    private Item item;
+
+    @BeforeEach
+    void setUp() {
+        customer = userRepository.save(RegularUser.builder().name("customer").username("customer")
+                .password("0000").build());
+        Restaurant restaurant = restaurantRepository.save(Restaurant.builder().name("restaurant").build());
+        item = itemRepository.save(Item.builder().name("item").stock(10).price(5).restaurant(restaurant).build());
+
+        for (int i = 0; i < OLD_DELIVERED; i++) {
+            addOrder(Status.DELIVERED, HORIZON.minus(i + 1, ChronoUnit.DAYS));
+        }
+        for (int i = 0; i < OLD_UNDELIVERED; i++) {
+            addOrder(Status.IN_PROGRESS, HORIZON.minus(i + 1, ChronoUnit.DAYS));
+        }
+        for (int i = 0; i < RECENT; i++) {
+            addOrder(Status.DELIVERED, HORIZON.plus(i, ChronoUnit.HOURS));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from ordered_item_archive");
+        orderArchiveRepository.deleteAllInBatch();
+        orderedItemRepository.deleteAllInBatch();
+        orderRepository.deleteAllInBatch();
+        itemRepository.deleteAllInBatch();
+        restaurantRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    private void addOrder(Status status, Instant createdAt) {
+        Order order = orderRepository.save(Order.builder().customer(customer).status(status).createdAt(createdAt)
+                .build());
+        orderedItemRepository.save(OrderedItem.builder().orderObj(order).item(item).quantity(2).build());
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("select count(*) from " + table, Long.class);
+    }
+
+    @Test
+    void movesOldDeliveredOrders() {
+        Assert.assertEquals(OLD_DELIVERED, orderArchiveService.archiveOrdersBefore(HORIZON));
+
+        Assert.assertEquals(OLD_UNDELIVERED + RECENT, orderRepository.count());
+        Assert.assertEquals(OLD_UNDELIVERED + RECENT, orderedItemRepository.count());
+        Assert.assertEquals(OLD_DELIVERED, orderArchiveRepository.count());
+        Assert.assertEquals(OLD_DELIVERED, count("ordered_item_archive"));
+        Assert.assertEquals(OLD_DELIVERED, jdbcTemplate.queryForObject(
+                "select sum(quantity) from ordered_item_archive", Long.class) / 2);
+
+        for (ArchivedOrder archived : orderArchiveRepository.findAll()) {
+            Assert.assertEquals(Status.DELIVERED, archived.getStatus());
+            Assert.assertEquals(customer.getId(), (int) archived.getCustomerId());
+            Assert.assertTrue(archived.getCreatedAt().isBefore(HORIZON));
+        }
+
+        Assert.assertEquals(0, orderArchiveService.archiveOrdersBefore(HORIZON));
+    }
+
+    @Test
+    void creationTimeIndexed() {
+        String plan = jdbcTemplate.queryForObject("explain select id from order_table where created_at < now()",
+                String.class).toLowerCase();
+        Assert.assertTrue(plan.contains("order_created_idx"));
+    }
+}
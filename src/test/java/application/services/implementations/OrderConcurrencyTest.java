@@ -0,0 +1,173 @@
+package application.services.implementations;
+
+import application.dto.RestaurantDTO;
+import application.dto.UserDTO;
+import application.entities.*;
+import application.repositories.*;
+import application.services.OrderService;
+import application.services.exceptions.InvalidDataException;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Places orders from many threads at once, each in its own committed transaction
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderConcurrencyTest {
+
+    private static final int ORDERS = 2000;
+    private static final int WALLET = 1500;
+    private static final int STOCK = 1800;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private OrderedItemRepository orderedItemRepository;
+
+    @Autowired
+    private DiscountRepository discountRepository;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    private ConcurrencyRetry retry;
+    private OrderService orderService;
+
+    private RegularUser customer;
+    private Restaurant restaurant;
+    private Item item;
+
+    @BeforeEach
+    void setUp() {
+        retry = new ConcurrencyRetry(new TransactionTemplate(transactionManager), 10, 5);
+        CourierDispatcher dispatcher = new CourierDispatcher(userRepository,
+                new CourierLocations(userRepository, retry, 0.01, 300000, 10), 3);
+        orderService = new OrderServiceImpl(orderRepository, itemRepository, userRepository, orderedItemRepository,
+                new DiscountTierCache(discountRepository), dispatcher, retry);
+
+        customer = userRepository.save(RegularUser.builder().name("customer").username("customer")
+                .password("0000").wallet(WALLET).build());
+        userRepository.save(DeliveryUser.builder().name("courier").username("courier").password("0000").build());
+        restaurant = restaurantRepository.save(Restaurant.builder().name("restaurant").items(new ArrayList<>())
+                .build());
+        item = itemRepository.save(Item.builder().name("item").stock(STOCK).price(1).restaurant(restaurant).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        orderedItemRepository.deleteAllInBatch();
+        orderRepository.deleteAllInBatch();
+        itemRepository.deleteAllInBatch();
+        restaurantRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void parallelOrdersKeepBalancesExact() throws Exception {
+        UserDTO customerDTO = new UserDTO(userRepository.findById(customer.getId()).get());
+        RestaurantDTO restaurantDTO = new RestaurantDTO(restaurant);
+        AtomicInteger placed = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+
+        ExecutorService threads = Executors.newFixedThreadPool(16);
+        List<Future<?>> orders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            orders.add(threads.submit(() -> {
+                try {
+                    orderService.createNewOrder(customerDTO, restaurantDTO,
+                            Collections.singletonMap(String.valueOf(item.getId()), "1"));
+                    placed.incrementAndGet();
+                } catch (InvalidDataException e) {
+                    refused.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> order : orders) {
+            order.get();
+        }
+        threads.shutdown();
+
+        Assert.assertEquals(WALLET, placed.get());
+        Assert.assertEquals(ORDERS - WALLET, refused.get());
+        Assert.assertEquals(0, ((RegularUser) userRepository.findById(customer.getId()).get()).getWallet(), 0.001);
+        Assert.assertEquals(STOCK - WALLET, itemRepository.findById(item.getId()).get().getStock());
+        Assert.assertEquals(WALLET, orderRepository.count());
+        Assert.assertEquals(WALLET, orderedItemRepository.count());
+    }
+
+    @Test
+    void versionConflictRetried() throws Exception {
+        TransactionTemplate concurrent = new TransactionTemplate(transactionManager);
+        concurrent.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        AtomicInteger attempts = new AtomicInteger();
+
+        retry.execute(() -> {
+            Item loaded = itemRepository.findById(item.getId()).get();
+            if (attempts.incrementAndGet() == 1) {
+                concurrent.execute(status -> {
+                    Item ordered = itemRepository.findById(item.getId()).get();
+                    ordered.setStock(ordered.getStock() - 1);
+                    return itemRepository.save(ordered);
+                });
+            }
+            loaded.setPrice(2);
+            return itemRepository.save(loaded);
+        });
+
+        Item saved = itemRepository.findById(item.getId()).get();
+        Assert.assertEquals(2, attempts.get());
+        Assert.assertEquals(STOCK - 1, saved.getStock());
+        Assert.assertEquals(2, saved.getPrice(), 0.001);
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        ConcurrencyRetry twice = new ConcurrencyRetry(TransactionOperations.withoutTransaction(), 2, 0);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(OptimisticLockingFailureException.class, () -> twice.execute(() -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockingFailureException("conflict");
+        }));
+        Assert.assertEquals(2, attempts.get());
+
+        assertThrows(InvalidDataException.class, () -> twice.execute(() -> {
+            attempts.incrementAndGet();
+            throw new InvalidDataException("invalid");
+        }));
+        Assert.assertEquals(3, attempts.get());
+    }
+}
@@ -0,0 +1,156 @@
+package application.services.implementations;
+
+import application.dto.OrderDTO;
+import application.dto.OrderFilterDTO;
+import application.dto.OrderPageDTO;
+import application.entities.*;
+import application.repositories.*;
+import application.services.OrderService;
+import application.services.exceptions.InvalidDataException;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.support.TransactionOperations;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Pages through the history of orders spread over two couriers, two restaurants and a month
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+class OrderHistoryTest {
+
+    private static final int ORDERS = 60;
+    private static final Instant START = Instant.parse("2020-05-01T00:00:00Z");
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private OrderedItemRepository orderedItemRepository;
+
+    @Autowired
+    private DiscountRepository discountRepository;
+
+    private OrderService orderService;
+
+    private Statistics statistics;
+
+    private DeliveryUser courier;
+    private Restaurant restaurant;
+
+    @BeforeEach
+    void setUp() {
+        ConcurrencyRetry retry = new ConcurrencyRetry(TransactionOperations.withoutTransaction(), 1, 0);
+        CourierDispatcher dispatcher = new CourierDispatcher(userRepository,
+                new CourierLocations(userRepository, retry, 0.01, 300000, 10), 3);
+        orderService = new OrderServiceImpl(orderRepository, itemRepository, userRepository, orderedItemRepository,
+                new DiscountTierCache(discountRepository), dispatcher, retry);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        RegularUser customer = entityManager.persist(RegularUser.builder().name("customer").username("customer")
+                .password("0000").build());
+        DeliveryUser[] couriers = new DeliveryUser[2];
+        Restaurant[] restaurants = new Restaurant[2];
+        for (int i = 0; i < 2; i++) {
+            couriers[i] = entityManager.persist(DeliveryUser.builder().name("courier").username("courier" + i)
+                    .password("0000").build());
+            restaurants[i] = entityManager.persist(Restaurant.builder().name("restaurant " + i).build());
+        }
+        // one order every 12 hours, alternating couriers, every third one at the second restaurant
+        for (int i = 0; i < ORDERS; i++) {
+            entityManager.persist(Order.builder().customer(customer).courier(couriers[i % 2])
+                    .restaurant(restaurants[i % 3 == 0 ? 1 : 0]).status(i < 10 ? Status.CREATED : Status.DELIVERED)
+                    .createdAt(START.plus(12L * i, ChronoUnit.HOURS)).build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        courier = couriers[0];
+        restaurant = restaurants[1];
+    }
+
+    private List<OrderDTO> allPages(OrderFilterDTO filter, int limit) throws InvalidDataException {
+        List<OrderDTO> orders = new ArrayList<>();
+        String cursor = null;
+        do {
+            statistics.clear();
+            OrderPageDTO page = orderService.getOrderHistory(filter, cursor, limit);
+            Assert.assertEquals(1, statistics.getPrepareStatementCount());
+            Assert.assertTrue(page.getOrders().size() <= limit);
+            orders.addAll(page.getOrders());
+            cursor = page.getNext();
+            entityManager.clear();
+        } while (cursor != null);
+        return orders;
+    }
+
+    private static void assertNewestFirst(List<OrderDTO> orders) {
+        for (int i = 1; i < orders.size(); i++) {
+            Assert.assertTrue(orders.get(i - 1).getId() > orders.get(i).getId());
+        }
+    }
+
+    @Test
+    void allOrdersInPages() throws Exception {
+        List<OrderDTO> orders = allPages(null, 7);
+
+        Assert.assertEquals(ORDERS, orders.size());
+        assertNewestFirst(orders);
+    }
+
+    @Test
+    void filtered() throws Exception {
+        List<OrderDTO> byCourier = allPages(OrderFilterDTO.builder().courierId(courier.getId()).build(), 10);
+        Assert.assertEquals(ORDERS / 2, byCourier.size());
+        assertNewestFirst(byCourier);
+        for (OrderDTO order : byCourier) {
+            Assert.assertEquals(courier.getId(), order.getCourier().getId());
+        }
+
+        Assert.assertEquals(ORDERS / 3, allPages(OrderFilterDTO.builder().restaurantId(restaurant.getId()).build(), 6)
+                .size());
+        Assert.assertEquals(10, allPages(OrderFilterDTO.builder().status(Status.CREATED).build(), 4).size());
+        // created orders are the first ten, half of them taken by the first courier
+        Assert.assertEquals(5, allPages(OrderFilterDTO.builder().status(Status.CREATED).courierId(courier.getId())
+                .build(), 4).size());
+    }
+
+    @Test
+    void timeRange() throws Exception {
+        // the second and third days, two orders each
+        OrderFilterDTO filter = OrderFilterDTO.builder().from("2020-05-02T00:00:00Z").to("2020-05-04T00:00:00Z")
+                .build();
+        Assert.assertEquals(4, allPages(filter, 3).size());
+    }
+
+    @Test
+    void invalidRequests() {
+        assertThrows(InvalidDataException.class, () -> orderService.getOrderHistory(null, "not a cursor", 10));
+        assertThrows(InvalidDataException.class, () -> orderService.getOrderHistory(null, null, 0));
+        assertThrows(InvalidDataException.class,
+                () -> orderService.getOrderHistory(OrderFilterDTO.builder().from("yesterday").build(), null, 10));
+    }
+}
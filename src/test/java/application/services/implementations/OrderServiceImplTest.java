@@ -1,6 +1,7 @@
 package application.services.implementations;
 
 import application.dto.OrderDTO;
+import application.dto.OrderStatusChangeDTO;
 import application.dto.RestaurantDTO;
 import application.dto.UserDTO;
 import application.entities.*;
@@ -12,12 +13,18 @@ import org.junit.Assert;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.transaction.support.TransactionOperations;
 import org.mockito.internal.matchers.apachecommons.ReflectionEquals;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -42,7 +49,11 @@ class OrderServiceImplTest {
         userRepository=Mockito.mock(UserRepository.class);
         orderedItemRepository=Mockito.mock(OrderedItemRepository.class);
         discountRepository=Mockito.mock(DiscountRepository.class);
-        orderService = new OrderServiceImpl(orderRepository, itemRepository, userRepository, orderedItemRepository, discountRepository);
+        ConcurrencyRetry retry = new ConcurrencyRetry(TransactionOperations.withoutTransaction(), 1, 0);
+        CourierDispatcher dispatcher = new CourierDispatcher(userRepository,
+                new CourierLocations(userRepository, retry, 0.01, 300000, 10), 3);
+        orderService = new OrderServiceImpl(orderRepository, itemRepository, userRepository, orderedItemRepository,
+                new DiscountTierCache(discountRepository), dispatcher, retry);
     }
 
     @Test
@@ -60,15 +71,14 @@ class OrderServiceImplTest {
         items.get(0).setRestaurant(restaurant);
         restaurant.setItems(items);
 
-        Mockito.when(itemRepository.findById(1)).thenReturn(java.util.Optional.ofNullable(item));
+        Mockito.when(itemRepository.findForOrder(Collections.singleton(1), 1)).thenReturn(items);
         Mockito.when(userRepository.findById(1)).thenReturn(java.util.Optional.ofNullable(user));
 
-        List<User> deliveryUsers = new ArrayList<>();
-        deliveryUsers.add(DeliveryUser.builder().id(2).name("curier").userType(UserType.DELIVERY).build());
+        DeliveryUser courier = DeliveryUser.builder().id(2).name("curier").userType(UserType.DELIVERY).build();
 
-        DeliveryUser courier = (DeliveryUser) deliveryUsers.get(0);
-
-        Mockito.when(userRepository.findAllByUserType(UserType.DELIVERY)).thenReturn(deliveryUsers);
+        Mockito.when(userRepository.findActiveOrdersByCourier(Mockito.anyCollection()))
+                .thenReturn(Collections.singletonList(new Object[]{2, null}));
+        Mockito.when(userRepository.findById(2)).thenReturn(java.util.Optional.of(courier));
 
         Mockito.doAnswer(invocationOnMock -> {
             if(invocationOnMock.getArguments()[0] instanceof User)
@@ -90,13 +100,7 @@ class OrderServiceImplTest {
             return null;
         }).when(orderRepository).save(Mockito.any(Order.class));
 
-        OrderedItem orderedItem = OrderedItem.builder().item(item).quantity(1).orderObj(order).build();
-
-        Mockito.doAnswer(invocationOnMock -> {
-            if(invocationOnMock.getArguments()[0] instanceof OrderedItem)
-                return orderedItem;
-            return null;
-        }).when(orderedItemRepository).save(Mockito.any(OrderedItem.class));
+        Mockito.when(userRepository.debitWallet(1, 5.0f)).thenReturn(1);
 
         Map<String,String> itemsToOrder = new HashMap<>();
         itemsToOrder.put("1","1");
@@ -106,6 +110,55 @@ class OrderServiceImplTest {
         Assert.assertEquals(order.getStatus(),obtainedOrder.getStatus());
         Assert.assertEquals(10.0f-item.getPrice(),obtainedOrder.getCustomer().getWallet(),0.01);
         Assert.assertEquals(order.getCourier().getId(),obtainedOrder.getCourier().getId());
+        Mockito.verify(itemRepository).reserveStock(new TreeMap<>(Collections.singletonMap(1, 1)));
+        Mockito.verify(orderedItemRepository).saveAll(Mockito.argThat(orderedItems -> orderedItems.iterator().hasNext()));
+        Mockito.verify(itemRepository, Mockito.never()).save(Mockito.any(Item.class));
+        Mockito.verify(userRepository, Mockito.never()).save(Mockito.any(User.class));
+    }
+
+    @Test
+    void createNewOrderSoldOut() {
+        User user = RegularUser.builder().id(1).name("andreea").username("andreeabea").userType(UserType.REGULAR)
+                .password("0000").wallet(10.0f).build();
+        Restaurant restaurant = Restaurant.builder().id(1).name("Sushi Restaurant").items(new ArrayList<>()).build();
+        // another order took the last one before the item was locked
+        Item item = Item.builder().id(1).name("sashimi").price(5.0f).stock(0).restaurant(restaurant).build();
+
+        Mockito.when(itemRepository.findForOrder(Collections.singleton(1), 1))
+                .thenReturn(Collections.singletonList(item));
+        Mockito.when(userRepository.findById(1)).thenReturn(java.util.Optional.of(user));
+
+        Map<String,String> itemsToOrder = new HashMap<>();
+        itemsToOrder.put("1","1");
+        assertThrows(InvalidDataException.class,
+                () -> orderService.createNewOrder(new UserDTO(user), new RestaurantDTO(restaurant), itemsToOrder));
+        Mockito.verify(userRepository, Mockito.never()).debitWallet(Mockito.anyInt(), Mockito.anyFloat());
+        Mockito.verify(orderRepository, Mockito.never()).save(Mockito.any(Order.class));
+    }
+
+    @Test
+    void createNewOrderStockTakenMeanwhile() {
+        User user = RegularUser.builder().id(1).name("andreea").username("andreeabea").userType(UserType.REGULAR)
+                .password("0000").wallet(10.0f).build();
+        Restaurant restaurant = Restaurant.builder().id(1).name("Sushi Restaurant").items(new ArrayList<>()).build();
+        // read with enough in stock, taken by another order before the reservation
+        Item item = Item.builder().id(1).name("sashimi").price(5.0f).stock(1).restaurant(restaurant).build();
+        DeliveryUser courier = DeliveryUser.builder().id(2).name("curier").userType(UserType.DELIVERY).build();
+
+        Mockito.when(itemRepository.findForOrder(Collections.singleton(1), 1))
+                .thenReturn(Collections.singletonList(item));
+        Mockito.when(userRepository.findById(1)).thenReturn(java.util.Optional.of(user));
+        Mockito.when(userRepository.findById(2)).thenReturn(java.util.Optional.of(courier));
+        Mockito.when(userRepository.findActiveOrdersByCourier(Mockito.anyCollection()))
+                .thenReturn(Collections.singletonList(new Object[]{2, null}));
+        Mockito.when(userRepository.debitWallet(1, 5.0f)).thenReturn(1);
+        Mockito.when(itemRepository.reserveStock(Mockito.any())).thenReturn(Collections.singletonList(1));
+
+        Map<String,String> itemsToOrder = new HashMap<>();
+        itemsToOrder.put("1","1");
+        assertThrows(InvalidDataException.class,
+                () -> orderService.createNewOrder(new UserDTO(user), new RestaurantDTO(restaurant), itemsToOrder));
+        Mockito.verify(orderRepository, Mockito.never()).save(Mockito.any(Order.class));
     }
 
     @Test
@@ -123,7 +176,7 @@ class OrderServiceImplTest {
 
         Discount obtainedDiscount = orderService.findApplicableDiscount(new RestaurantDTO(restaurant),5);
 
-        Assert.assertTrue(new ReflectionEquals(d1).matches(obtainedDiscount));
+        Assert.assertTrue(new ReflectionEquals(d1, "discRestaurant").matches(obtainedDiscount));
 
         obtainedDiscount = orderService.findApplicableDiscount(new RestaurantDTO(restaurant),1);
 
@@ -142,24 +195,56 @@ class OrderServiceImplTest {
 
     @Test
     void changeOrderStatus() throws InvalidDataException, EntityNotFoundException {
-        User user = RegularUser.builder().id(1).name("andreea").username("andreeabea").userType(UserType.REGULAR)
-                .password("0000").wallet(10.0f).build();
-        List<User> deliveryUsers = new ArrayList<>();
-        deliveryUsers.add(DeliveryUser.builder().id(2).name("curier").userType(UserType.DELIVERY).build());
-
-        DeliveryUser courier = (DeliveryUser) deliveryUsers.get(0);
-        Order order = Order.builder().id(5).customer((RegularUser) user).courier(courier).status(Status.CREATED).build();
-
-        Mockito.when(orderRepository.findById(5)).thenReturn(java.util.Optional.ofNullable(order));
+        Mockito.when(orderRepository.lockStatuses(Collections.singleton(5)))
+                .thenReturn(Collections.singletonList(new Object[]{5, Status.CREATED.ordinal(), 1, 2}));
+        Mockito.when(orderRepository.updateStatus(Collections.singletonList(5),
+                Collections.singleton(Status.CREATED), Status.IN_PROGRESS)).thenReturn(1);
+
+        OrderStatusChangeDTO change = orderService.changeOrderStatus("5","IN_PROGRESS");
+
+        Assert.assertTrue(change.isChanged());
+        Assert.assertEquals(Status.IN_PROGRESS, change.getStatus());
+        Assert.assertEquals(1, (int) change.getCustomerId());
+        Mockito.verify(orderRepository).updateStatus(Collections.singletonList(5),
+                Collections.singleton(Status.CREATED), Status.IN_PROGRESS);
+        Mockito.verify(orderRepository, Mockito.never()).save(Mockito.any(Order.class));
+    }
 
-        Mockito.doAnswer(invocationOnMock -> {
-            if(invocationOnMock.getArguments()[0] instanceof Order)
-                return order;
-            return null;
-        }).when(orderRepository).save(Mockito.any(Order.class));
+    @Test
+    void changeOrderStatuses() throws InvalidDataException, EntityNotFoundException {
+        Mockito.when(orderRepository.lockStatuses(Mockito.anyCollection())).thenReturn(Arrays.asList(
+                new Object[]{3, Status.IN_PROGRESS.ordinal(), 1, 2},
+                new Object[]{4, Status.CREATED.ordinal(), 1, 2},
+                new Object[]{5, Status.DELIVERED.ordinal(), 1, 2}));
+        Mockito.when(orderRepository.updateStatus(Collections.singletonList(3),
+                Collections.singleton(Status.IN_PROGRESS), Status.DELIVERED)).thenReturn(1);
+
+        List<OrderStatusChangeDTO> changes = orderService.changeOrderStatuses(Arrays.asList(5, 4, 3, 6), "DELIVERED");
+
+        Assert.assertEquals(Arrays.asList(5, 4, 3, 6),
+                changes.stream().map(OrderStatusChangeDTO::getOrderId).collect(Collectors.toList()));
+        Assert.assertFalse(changes.get(0).isChanged());
+        Assert.assertEquals("Invalid status. The order must be in progress first, then to be delivered!",
+                changes.get(0).getError());
+        Assert.assertNotNull(changes.get(1).getError());
+        Assert.assertTrue(changes.get(2).isChanged());
+        Assert.assertEquals("Order not found!", changes.get(3).getError());
+        Mockito.verify(orderRepository).updateStatus(Collections.singletonList(3),
+                Collections.singleton(Status.IN_PROGRESS), Status.DELIVERED);
+
+        Mockito.when(orderRepository.lockStatuses(Collections.singleton(4)))
+                .thenReturn(Collections.singletonList(new Object[]{4, Status.CREATED.ordinal(), 1, 2}));
+        assertThrows(InvalidDataException.class, () -> orderService.changeOrderStatus("4", "DELIVERED"));
+        assertThrows(InvalidDataException.class, () -> orderService.changeOrderStatuses(Arrays.asList(3), "LOST"));
+    }
 
-        orderService.changeOrderStatus("5","IN_PROGRESS");
+    @Test
+    void changeOrderStatusesRetriedWhenRowsMoved() {
+        Mockito.when(orderRepository.lockStatuses(Collections.singleton(3)))
+                .thenReturn(Collections.singletonList(new Object[]{3, Status.IN_PROGRESS.ordinal(), 1, 2}));
+        Mockito.when(orderRepository.updateStatus(Collections.singletonList(3),
+                Collections.singleton(Status.IN_PROGRESS), Status.DELIVERED)).thenReturn(0);
 
-        Assert.assertEquals(order.getStatus(),Status.IN_PROGRESS);
+        assertThrows(ConcurrencyFailureException.class, () -> orderService.changeOrderStatus("3", "DELIVERED"));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,95 @@
+package application.services.implementations;
+
+import application.dto.UserDTO;
+import application.entities.Rating;
+import application.entities.RegularUser;
+import application.entities.Restaurant;
+import application.repositories.RatingRepository;
+import application.repositories.RestaurantRepository;
+import application.repositories.UserRepository;
+import application.services.RatingService;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Changes the rate of one rating from many threads at once, each change in its own committed transaction
+ */
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(RatingServiceImpl.class)
+class RatingConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int UPDATES = 50;
+
+    @Autowired
+    private RatingService ratingService;
+
+    @Autowired
+    private RatingRepository ratingRepository;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Restaurant restaurant;
+    private RegularUser user;
+    private Rating rating;
+
+    @BeforeEach
+    void setUp() {
+        restaurant = restaurantRepository.save(Restaurant.builder().name("restaurant").items(new ArrayList<>())
+                .ratingSum(1).ratingCount(1).build());
+        user = userRepository.save(RegularUser.builder().name("customer").username("customer").password("0000")
+                .wallet(0).build());
+        rating = ratingRepository.save(Rating.builder().rate(1).ratedRestaurant(restaurant).user(user).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        ratingRepository.deleteAllInBatch();
+        restaurantRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void parallelUpdatesKeepAggregateExact() throws Exception {
+        UserDTO userDTO = new UserDTO(userRepository.findById(user.getId()).get());
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> updates = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Random random = new Random(i);
+            updates.add(threads.submit(() -> {
+                for (int update = 0; update < UPDATES; update++) {
+                    ratingService.updateRating(String.valueOf(rating.getId()),
+                            String.valueOf(1 + random.nextInt(5)), userDTO);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> update : updates) {
+            update.get();
+        }
+        threads.shutdown();
+
+        Restaurant saved = restaurantRepository.findById(restaurant.getId()).get();
+        Assert.assertEquals(1, saved.getRatingCount());
+        Assert.assertEquals(ratingRepository.findById(rating.getId()).get().getRate(), saved.getRatingSum());
+    }
+}
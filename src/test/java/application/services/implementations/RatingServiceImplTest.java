@@ -15,6 +15,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.mockito.internal.matchers.apachecommons.ReflectionEquals;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -46,7 +50,7 @@ class RatingServiceImplTest {
                 .password("0000").wallet(10.0f).favourites(new ArrayList<>()).ratings(new ArrayList<>()).build();
 
         Rating rating = Rating.builder().rate(5).ratedRestaurant(restaurant).user((RegularUser) user).build();
-        Mockito.when(userRepository.findById(1)).thenReturn(java.util.Optional.ofNullable(user));
+        Mockito.when(userRepository.findWithRatingsById(1)).thenReturn(java.util.Optional.ofNullable((RegularUser) user));
         Mockito.when(restaurantRepository.findById(1)).thenReturn(java.util.Optional.of(restaurant));
 
         Mockito.doAnswer(invocationOnMock -> {
@@ -65,6 +69,7 @@ class RatingServiceImplTest {
 
         Assert.assertEquals(((RegularUser) user).getRatings().size(),1);
         Assert.assertTrue(new ReflectionEquals(rating).matches(((RegularUser) user).getRatings().get(0)));
+        Mockito.verify(restaurantRepository).addToRatings(1, 5, 1);
     }
 
     @Test
@@ -79,7 +84,7 @@ class RatingServiceImplTest {
         ratingList.add(rating);
         ((RegularUser) user).setRatings(ratingList);
 
-        Mockito.when(ratingRepository.findById(1)).thenReturn(java.util.Optional.ofNullable(rating));
+        Mockito.when(ratingRepository.lockById(1)).thenReturn(java.util.Optional.ofNullable(rating));
 
         Mockito.doAnswer(invocationOnMock -> {
             if(invocationOnMock.getArguments()[0] instanceof Rating)
@@ -90,6 +95,7 @@ class RatingServiceImplTest {
         ratingService.updateRating("1","3",new UserDTO(user));
 
         Assert.assertEquals(((RegularUser) user).getRatings().get(0).getRate(),3);
+        Mockito.verify(restaurantRepository).addToRatings(1, -2, 0);
     }
 
     @Test
@@ -104,7 +110,7 @@ class RatingServiceImplTest {
 
         List<RatingDTO> ratingDTOS = new ArrayList<>();
 
-        Mockito.when(ratingRepository.findAll()).thenReturn(ratingList);
+        Mockito.when(ratingRepository.findByUserId(1)).thenReturn(ratingList);
 
         List<RatingDTO> obtainedRatings = ratingService.getRatings("1");
         ratingDTOS.add(obtainedRatings.get(0));
@@ -112,6 +118,25 @@ class RatingServiceImplTest {
         Assert.assertThat(obtainedRatings, CoreMatchers.is(ratingDTOS));
     }
 
+    @Test
+    void getRatingsPage() throws InvalidDataException {
+        Restaurant restaurant = Restaurant.builder().id(1).name("Sushi Restaurant").items(new ArrayList<>()).build();
+        User user = RegularUser.builder().id(1).name("andreea").username("andreeabea").userType(UserType.REGULAR)
+                .password("0000").wallet(10.0f).favourites(new ArrayList<>()).ratings(new ArrayList<>()).build();
+        List<Rating> ratingList = new ArrayList<>();
+        ratingList.add(Rating.builder().id(1).rate(5).ratedRestaurant(restaurant).user((RegularUser) user).build());
+
+        Pageable pageable = PageRequest.of(0, 10);
+        Mockito.when(ratingRepository.findByUserId(1, pageable)).thenReturn(new SliceImpl<>(ratingList, pageable, false));
+
+        Slice<RatingDTO> page = ratingService.getRatings("1", pageable);
+
+        Assert.assertEquals(1, page.getNumberOfElements());
+        Assert.assertEquals("Sushi Restaurant", page.getContent().get(0).getRestaurant());
+        Assert.assertFalse(page.hasNext());
+        assertThrows(InvalidDataException.class, () -> ratingService.getRatings("x", pageable));
+    }
+
     @Test
     void deleteRating() throws InvalidDataException, EntityNotFoundException {
         Restaurant restaurant = Restaurant.builder().id(1).name("Sushi Restaurant").items(new ArrayList<>()).build();
@@ -123,7 +148,7 @@ class RatingServiceImplTest {
         ratingList.add(rating);
         ((RegularUser) user).setRatings(ratingList);
 
-        Mockito.when(ratingRepository.findById(1)).thenReturn(java.util.Optional.ofNullable(rating));
+        Mockito.when(ratingRepository.lockById(1)).thenReturn(java.util.Optional.ofNullable(rating));
 
         Mockito.doAnswer(invocationOnMock -> {
             if(invocationOnMock.getArguments()[0] instanceof Rating)
@@ -132,5 +157,6 @@ class RatingServiceImplTest {
         }).when(ratingRepository).delete(Mockito.any(Rating.class));
 
         ratingService.deleteRating("1",new UserDTO(user));
+        Mockito.verify(restaurantRepository).addToRatings(1, -5, -1);
     }
 }
\ No newline at end of file
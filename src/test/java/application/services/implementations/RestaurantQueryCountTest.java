@@ -0,0 +1,131 @@
+package application.services.implementations;
+
+import application.dto.RestaurantDTO;
+import application.entities.*;
+import application.repositories.DiscountRepository;
+import application.repositories.RestaurantRepository;
+import application.services.RestaurantService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Runs the restaurant list against an in-memory database and counts the statements it needs
+ */
+@DataJpaTest(properties = {"spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+class RestaurantQueryCountTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    @Autowired
+    private DiscountRepository discountRepository;
+
+    private RestaurantService restaurantService;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        restaurantService = new RestaurantServiceImpl(restaurantRepository, discountRepository,
+                new DiscountTierCache(discountRepository));
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private RegularUser customer(String username) {
+        return entityManager.persist(RegularUser.builder().name(username).username(username).password("0000")
+                .wallet(100).build());
+    }
+
+    /**
+     * Adds restaurants with two items and a rating each, and orders of those items
+     */
+    private void addRestaurants(int restaurants, int ordersPerItem) {
+        RegularUser customer = customer("customer" + restaurants + "-" + ordersPerItem);
+        for (int r = 0; r < restaurants; r++) {
+            Restaurant restaurant = entityManager.persist(Restaurant.builder().name("restaurant " + r).build());
+            entityManager.persist(Rating.builder().rate(r % 5 + 1).ratedRestaurant(restaurant).user(customer).build());
+            for (int i = 0; i < 2; i++) {
+                Item item = entityManager.persist(Item.builder().name("item " + i).stock(10).price(5.0f)
+                        .restaurant(restaurant).build());
+                for (int o = 0; o < ordersPerItem; o++) {
+                    Order order = entityManager.persist(Order.builder().customer(customer).status(Status.CREATED)
+                            .createdAt(Instant.parse("2020-01-01T12:00:00Z")).build());
+                    entityManager.persist(OrderedItem.builder().item(item).orderObj(order).quantity(1).build());
+                }
+            }
+        }
+        entityManager.flush();
+        restaurantRepository.recomputeRatings();
+        entityManager.clear();
+    }
+
+    private long countStatements(Runnable call) {
+        statistics.clear();
+        call.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    void constantQueryCount() {
+        addRestaurants(3, 1);
+        long fewOrders = countStatements(() -> restaurantService.getAllRestaurants());
+
+        addRestaurants(3, 20);
+        entityManager.clear();
+        long manyOrders = countStatements(() -> restaurantService.getAllRestaurants());
+
+        Assert.assertEquals(2, fewOrders);
+        Assert.assertEquals(fewOrders, manyOrders);
+    }
+
+    @Test
+    void sameRestaurantsAsTheEntities() {
+        addRestaurants(2, 1);
+
+        List<RestaurantDTO> restaurants = restaurantService.getAllRestaurants();
+
+        Assert.assertEquals(2, restaurants.size());
+        for (RestaurantDTO restaurant : restaurants) {
+            Assert.assertEquals(new RestaurantDTO(restaurantRepository.findById(restaurant.getId()).get()).getItems().size(),
+                    restaurant.getItems().size());
+        }
+        Assert.assertEquals("1.0 (1)", restaurants.get(0).getRating());
+        Assert.assertEquals("2.0 (1)", restaurants.get(1).getRating());
+    }
+
+    @Test
+    void ratingAggregatesUpdatedInPlace() {
+        addRestaurants(1, 1);
+        int id = restaurantService.getAllRestaurants().get(0).getId();
+
+        restaurantRepository.addToRatings(id, 4, 1);
+        entityManager.flush();
+        entityManager.clear();
+
+        Restaurant restaurant = restaurantRepository.findById(id).get();
+        Assert.assertEquals(5, restaurant.getRatingSum());
+        Assert.assertEquals(2, restaurant.getRatingCount());
+
+        restaurantRepository.recomputeRatings();
+        entityManager.clear();
+
+        Assert.assertEquals("1.0 (1)", new RestaurantDTO(restaurantRepository.findById(id).get()).getRating());
+    }
+}
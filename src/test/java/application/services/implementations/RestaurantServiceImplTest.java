@@ -3,6 +3,7 @@ package application.services.implementations;
 import application.dto.DiscountDTO;
 import application.dto.ItemDTO;
 import application.dto.RestaurantDTO;
+import application.dto.RestaurantSummary;
 import application.entities.Discount;
 import application.entities.Item;
 import application.entities.Restaurant;
@@ -17,6 +18,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.mockito.internal.matchers.apachecommons.ReflectionEquals;
+import org.springframework.data.domain.Sort;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -29,13 +31,16 @@ class RestaurantServiceImplTest {
 
     private DiscountRepository discountRepository;
 
+    private DiscountTierCache discountTiers;
+
     private RestaurantService restaurantService;
 
     @BeforeEach
     void setUp() {
         restaurantRepository = Mockito.mock(RestaurantRepository.class);
         discountRepository = Mockito.mock(DiscountRepository.class);
-        restaurantService = new RestaurantServiceImpl(restaurantRepository,discountRepository);
+        discountTiers = new DiscountTierCache(discountRepository);
+        restaurantService = new RestaurantServiceImpl(restaurantRepository, discountRepository, discountTiers);
     }
 
     @Test
@@ -51,7 +56,8 @@ class RestaurantServiceImplTest {
 
     @Test
     void getAllRestaurants() {
-        Restaurant restaurant = Restaurant.builder().id(1).name("Sushi Restaurant").items(new ArrayList<>()).build();
+        Restaurant restaurant = Restaurant.builder().id(1).name("Sushi Restaurant").items(new ArrayList<>())
+                .latitude(46.77).longitude(23.59).build();
         Restaurant restaurant2 = Restaurant.builder().id(2).name("Ghandi").items(new ArrayList<>()).build();
 
         List<Restaurant> restaurants = new ArrayList<>();
@@ -62,7 +68,11 @@ class RestaurantServiceImplTest {
         restaurantDTOS.add(new RestaurantDTO(restaurant));
         restaurantDTOS.add(new RestaurantDTO(restaurant2));
 
-        Mockito.when(restaurantRepository.findAll()).thenReturn(restaurants);
+        List<RestaurantSummary> summaries = new ArrayList<>();
+        summaries.add(new RestaurantSummary(1, "Sushi Restaurant", 0, 0, 46.77, 23.59));
+        summaries.add(new RestaurantSummary(2, "Ghandi", 0, 0, null, null));
+
+        Mockito.when(restaurantRepository.findSummaries(Mockito.any(Sort.class))).thenReturn(summaries);
         List<RestaurantDTO> obtainedRestaurants = restaurantService.getAllRestaurants();
 
         Assert.assertThat(obtainedRestaurants, CoreMatchers.is(restaurantDTOS));
@@ -156,10 +166,8 @@ class RestaurantServiceImplTest {
         Restaurant restaurant = Restaurant.builder().id(1).name("Sushi Restaurant").discounts(new ArrayList<>()).build();
         List<Discount> discounts = new ArrayList<>();
         Discount d1 = Discount.builder().id(2).discRestaurant(restaurant).minItemNumber(2).percentage(10).build();
-        Discount d2 = Discount.builder().id(3).discRestaurant(Restaurant.builder().build()).build();
         discounts.add(d1);
-        discounts.add(d2);
-        Mockito.when(discountRepository.findAll()).thenReturn(discounts);
+        Mockito.when(discountRepository.findByDiscRestaurantId(1)).thenReturn(discounts);
 
         List<DiscountDTO> obtainedDiscounts = restaurantService.getDiscounts("1");
         List<DiscountDTO> discountsTest = new ArrayList<>();
@@ -173,7 +181,7 @@ class RestaurantServiceImplTest {
         Restaurant restaurant = Restaurant.builder().id(1).name("Sushi Restaurant").discounts(new ArrayList<>()).build();
         Discount d1 = Discount.builder().id(2).discRestaurant(restaurant).minItemNumber(2).percentage(10).build();
 
-        Mockito.when(restaurantRepository.findById(1)).thenReturn(java.util.Optional.ofNullable(restaurant));
+        Mockito.when(restaurantRepository.findWithDiscountsById(1)).thenReturn(java.util.Optional.ofNullable(restaurant));
 
         Mockito.doAnswer(invocationOnMock -> {
             if(invocationOnMock.getArguments()[0] instanceof Discount)
@@ -183,9 +191,23 @@ class RestaurantServiceImplTest {
 
         restaurantService.addDiscount("1","2","10");
         Assert.assertEquals(1, restaurant.getDiscounts().size());
+        Mockito.verify(restaurantRepository).bumpMenuVersion(1);
         Assert.assertTrue(new ReflectionEquals(d1,"id").matches(restaurant.getDiscounts().get(0)));
     }
 
+    @Test
+    void updateRestaurantLocation() throws InvalidDataException, EntityNotFoundException {
+        Restaurant restaurant = Restaurant.builder().id(1).name("Sushi Restaurant").build();
+        Mockito.when(restaurantRepository.findById(1)).thenReturn(java.util.Optional.of(restaurant));
+
+        restaurantService.updateRestaurantLocation("1", "46.77", "23.59");
+
+        Assert.assertEquals(46.77, restaurant.getLatitude(), 0.0001);
+        Assert.assertEquals(23.59, restaurant.getLongitude(), 0.0001);
+        Mockito.verify(restaurantRepository).save(restaurant);
+        Mockito.verify(restaurantRepository, Mockito.never()).bumpMenuVersion(Mockito.anyInt());
+    }
+
     @Test
     void deleteDiscount()
     {
@@ -202,4 +224,41 @@ class RestaurantServiceImplTest {
 
         Assert.assertEquals(0, restaurant.getDiscounts().size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void addDiscountRefreshesTiers() throws InvalidDataException, EntityNotFoundException {
+        Restaurant restaurant = Restaurant.builder().id(1).name("Sushi Restaurant").discounts(new ArrayList<>()).build();
+        List<Discount> discounts = new ArrayList<>();
+        discounts.add(Discount.builder().id(2).discRestaurant(restaurant).minItemNumber(2).percentage(10).build());
+        Mockito.when(discountRepository.findByDiscRestaurantId(1)).thenReturn(discounts);
+        Mockito.when(restaurantRepository.findWithDiscountsById(1)).thenReturn(java.util.Optional.of(restaurant));
+
+        Assert.assertEquals(10, discountTiers.findApplicable(1, 5).getPercentage());
+        Assert.assertEquals(10, discountTiers.findApplicable(1, 2).getPercentage());
+        Assert.assertNull(discountTiers.findApplicable(1, 1));
+        Mockito.verify(discountRepository, Mockito.times(1)).findByDiscRestaurantId(1);
+
+        restaurantService.addDiscount("1", "4", "20");
+        discounts.add(Discount.builder().id(3).discRestaurant(restaurant).minItemNumber(4).percentage(20).build());
+
+        Assert.assertEquals(20, discountTiers.findApplicable(1, 5).getPercentage());
+        Assert.assertEquals(10, discountTiers.findApplicable(1, 3).getPercentage());
+        Mockito.verify(discountRepository, Mockito.times(2)).findByDiscRestaurantId(1);
+    }
+
+    @Test
+    void tiersLoadedDuringInvalidationNotKept() {
+        Restaurant restaurant = Restaurant.builder().id(1).name("Sushi Restaurant").discounts(new ArrayList<>()).build();
+        List<Discount> discounts = new ArrayList<>();
+        discounts.add(Discount.builder().id(2).discRestaurant(restaurant).minItemNumber(2).percentage(10).build());
+        Mockito.when(discountRepository.findByDiscRestaurantId(1)).thenAnswer(invocation -> {
+            discountTiers.invalidate(1);
+            return discounts;
+        }).thenReturn(discounts);
+
+        Assert.assertEquals(10, discountTiers.findApplicable(1, 3).getPercentage());
+        Assert.assertEquals(10, discountTiers.findApplicable(1, 3).getPercentage());
+        Assert.assertEquals(10, discountTiers.findApplicable(1, 3).getPercentage());
+        Mockito.verify(discountRepository, Mockito.times(2)).findByDiscRestaurantId(1);
+    }
+}
@@ -19,6 +19,7 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.internal.matchers.apachecommons.ReflectionEquals;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.transaction.support.TransactionOperations;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -44,7 +45,8 @@ class UserServiceImplTest {
         restaurantRepository = Mockito.mock(RestaurantRepository.class);
         userFavouriteRestaurantRepository=Mockito.mock(UserFavouriteRestaurantRepository.class);
         ratingRepository=Mockito.mock(RatingRepository.class);
-        userService = new UserServiceImpl(userRepository,restaurantRepository,userFavouriteRestaurantRepository,ratingRepository);
+        userService = new UserServiceImpl(userRepository,restaurantRepository,userFavouriteRestaurantRepository,ratingRepository,
+                new ConcurrencyRetry(TransactionOperations.withoutTransaction(), 1, 0));
     }
 
     @Test
@@ -99,7 +101,7 @@ class UserServiceImplTest {
 
         List<UserDTO> userDTOS = new ArrayList<>();
 
-        Mockito.when(userRepository.findAll()).thenReturn(users);
+        Mockito.when(userRepository.findAllByUserType(UserType.REGULAR)).thenReturn(users);
         List<UserDTO> obtainedUsers = userService.getAllRegularUsers();
 
         userDTOS.add(obtainedUsers.get(0));
@@ -164,7 +166,7 @@ class UserServiceImplTest {
                 .regularUser((RegularUser) user).build();
 
         Mockito.when(restaurantRepository.findById(1)).thenReturn(java.util.Optional.ofNullable(restaurant));
-        Mockito.when(userRepository.findById(1)).thenReturn(java.util.Optional.ofNullable(user));
+        Mockito.when(userRepository.findWithFavouritesById(1)).thenReturn(java.util.Optional.ofNullable((RegularUser) user));
 
         Mockito.doAnswer(invocationOnMock -> {
             if(invocationOnMock.getArguments()[0] instanceof User)
@@ -203,7 +205,7 @@ class UserServiceImplTest {
         restaurant.setUsers(favouriteRestaurants);
         ((RegularUser) user).setFavourites(favouriteRestaurants);
 
-        Mockito.when(userRepository.findById(1)).thenReturn(java.util.Optional.ofNullable(user));
+        Mockito.when(userRepository.findWithFavouritesById(1)).thenReturn(java.util.Optional.ofNullable((RegularUser) user));
 
         List<RestaurantDTO> restaurantDTOS = userService.getFavouriteRestaurants("1");
 
@@ -225,7 +227,7 @@ class UserServiceImplTest {
         restaurant.setUsers(favouriteRestaurants);
         ((RegularUser) user).setFavourites(favouriteRestaurants);
 
-        Mockito.when(userRepository.findById(1)).thenReturn(java.util.Optional.ofNullable(user));
+        Mockito.when(userRepository.findWithFavouritesById(1)).thenReturn(java.util.Optional.ofNullable((RegularUser) user));
         Mockito.when(restaurantRepository.findById(1)).thenReturn(java.util.Optional.of(restaurant));
 
         Mockito.doAnswer(invocationOnMock -> {
@@ -246,7 +248,7 @@ class UserServiceImplTest {
                 .password("0000").wallet(10.0f).favourites(new ArrayList<>()).ratings(new ArrayList<>()).build();
 
         Rating rating = Rating.builder().rate(5).ratedRestaurant(restaurant).user((RegularUser) user).build();
-        Mockito.when(userRepository.findById(1)).thenReturn(java.util.Optional.ofNullable(user));
+        Mockito.when(userRepository.findWithRatingsById(1)).thenReturn(java.util.Optional.ofNullable((RegularUser) user));
         Mockito.when(restaurantRepository.findById(1)).thenReturn(java.util.Optional.of(restaurant));
 
         Mockito.doAnswer(invocationOnMock -> {
@@ -265,5 +267,6 @@ class UserServiceImplTest {
 
         Assert.assertEquals(((RegularUser) user).getRatings().size(),1);
         Assert.assertTrue(new ReflectionEquals(rating).matches(((RegularUser) user).getRatings().get(0)));
+        Mockito.verify(restaurantRepository).addToRatings(1, 5, 1);
     }
 }
\ No newline at end of file